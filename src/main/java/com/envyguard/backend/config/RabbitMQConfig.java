@@ -2,11 +2,14 @@ package com.envyguard.backend.config;
 
 import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,19 +26,46 @@ public class RabbitMQConfig {
 
     public static final String PC_COMMANDS_QUEUE = "pc_commands";
     public static final String PC_RESPONSES_QUEUE = "pc_responses";
+    public static final String PC_RESPONSES_DLQ = "pc_responses.dlq";
     public static final String PC_STATUS_UPDATES_QUEUE = "pc_status_updates";
 
     // Exchange for screen monitoring control commands (START/STOP)
     public static final String SPY_CONTROL_EXCHANGE = "spy.control";
 
+    /**
+     * Maximum message priority of the pc_commands queue (see CommandLane).
+     */
+    public static final int PC_COMMANDS_MAX_PRIORITY = 10;
+
     /**
      * Defines the queue for commands sent to C# agents.
+     * Priority-aware, so urgent commands are delivered before a backlog of bulk
+     * installs.
      *
      * @return Configured queue
      */
     @Bean
     public Queue pcCommandsQueue() {
-        return new Queue(PC_COMMANDS_QUEUE, true);
+        return QueueBuilder.durable(PC_COMMANDS_QUEUE)
+                .maxPriority(PC_COMMANDS_MAX_PRIORITY)
+                .build();
+    }
+
+    /**
+     * Declares the queues and exchanges on connection. Declaration errors are
+     * logged instead of failing: an existing pc_commands queue created without
+     * x-max-priority cannot be redeclared with it (PRECONDITION_FAILED) until it
+     * is deleted on the broker, and the rest of the topology must still work
+     * meanwhile.
+     *
+     * @param connectionFactory RabbitMQ connection factory
+     * @return Configured RabbitAdmin
+     */
+    @Bean
+    public RabbitAdmin rabbitAdmin(ConnectionFactory connectionFactory) {
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        admin.setIgnoreDeclarationExceptions(true);
+        return admin;
     }
 
     /**
@@ -48,6 +78,17 @@ public class RabbitMQConfig {
         return new Queue(PC_RESPONSES_QUEUE, true);
     }
 
+    /**
+     * Defines the queue that keeps the command responses that could not be
+     * applied after every retry, for inspection or manual replay.
+     *
+     * @return Configured queue
+     */
+    @Bean
+    public Queue pcResponsesDeadLetterQueue() {
+        return new Queue(PC_RESPONSES_DLQ, true);
+    }
+
     /**
      * Defines the queue for PC status updates.
      *
@@ -131,4 +172,43 @@ public class RabbitMQConfig {
 
         return factory;
     }
+
+    /**
+     * Configures a batch listener container factory for the pc_responses queue.
+     * Each delivery to the listener contains up to {@code batchSize} messages, or
+     * whatever arrived within {@code receiveTimeoutMs}, and the whole batch is
+     * acknowledged together once the listener returns, or requeued together if
+     * it throws {@link org.springframework.amqp.ImmediateRequeueAmqpException}
+     * (the listener caps those retries and dead-letters single messages to
+     * {@value #PC_RESPONSES_DLQ} itself).
+     *
+     * A single consumer is used so responses for the same command (SENT, then
+     * EXECUTED) are applied in the order the agent published them.
+     *
+     * @param connectionFactory RabbitMQ connection factory
+     * @param batchSize         Maximum number of messages per batch
+     * @param receiveTimeoutMs  Maximum time to wait for a batch to fill up
+     * @return Configured SimpleRabbitListenerContainerFactory
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${commands.responses.batch-size:100}") int batchSize,
+            @Value("${commands.responses.receive-timeout-ms:200}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMissingQueuesFatal(false);
+        factory.setDefaultRequeueRejected(false);
+        factory.setAcknowledgeMode(org.springframework.amqp.core.AcknowledgeMode.AUTO);
+
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(batchSize);
+
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        return factory;
+    }
 }
@@ -90,8 +90,11 @@ public class SecurityConfig {
                         .requestMatchers("/health").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
                         .requestMatchers("/ws-spy/**").permitAll()
+                        .requestMatchers("/ws-screens", "/ws-screens/**").permitAll()
                         .requestMatchers("/computers", "/computers/**").permitAll()
                         .requestMatchers("/public", "/public/**").permitAll()
+                        // Capturas de pantalla de exámenes: solo usuarios autenticados
+                        .requestMatchers("/control/screens/**").authenticated()
                         .requestMatchers("/control/**").permitAll()
                         .anyRequest().authenticated())
                 .sessionManagement(session -> session
@@ -15,6 +15,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Aquí se conectará React (http://localhost:8080/ws-spy)
         // setAllowedOriginPatterns("*") permite que cualquiera se conecte (útil para desarrollo)
         registry.addEndpoint("/ws-spy").setAllowedOriginPatterns("*").withSockJS();
+        // WebSocket nativo (sin SockJS): los frames de pantalla llegan como frames binarios
+        registry.addEndpoint("/ws-screens").setAllowedOriginPatterns("*");
     }
 
     @Override
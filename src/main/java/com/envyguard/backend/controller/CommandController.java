@@ -1,7 +1,12 @@
 package com.envyguard.backend.controller;
 
+import com.envyguard.backend.dto.BatchCommandRequest;
+import com.envyguard.backend.dto.BatchCommandResponse;
+import com.envyguard.backend.dto.CommandFilter;
+import com.envyguard.backend.dto.CommandPageResponse;
 import com.envyguard.backend.dto.CommandRequest;
 import com.envyguard.backend.entity.Command;
+import com.envyguard.backend.service.CommandExportService;
 import com.envyguard.backend.service.CommandService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,11 +18,15 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 /**
@@ -31,6 +40,7 @@ import java.util.Map;
 public class CommandController {
 
         private final CommandService commandService;
+        private final CommandExportService commandExportService;
         private final com.envyguard.backend.service.InstallableAppService installableAppService;
 
         /**
@@ -47,8 +57,11 @@ public class CommandController {
                         1. Searches for the PC in sala_{number} table by its ID
                         2. Automatically retrieves: computer name, IP, MAC address
                         3. Creates command record with PENDING status
-                        4. Sends to RabbitMQ for C# agent execution
-                        5. Command status changes to SENT
+                        4. Queues the agent message in the command outbox (same transaction)
+                        5. A background relay publishes it to RabbitMQ and changes the status to SENT
+
+                        The request never waits for RabbitMQ: the response returns as soon as
+                        the command is stored, with status PENDING.
 
                         EXAMPLE:
                         To shutdown PC 1 in Room 4:
@@ -71,15 +84,24 @@ public class CommandController {
                         - FORMAT: Logical format/cleanup
                         - INSTALL_APP: Install application (resolves command from DB)
                         - INSTALL_SNAP: Install snap package
+
+                        DUPLICATES:
+                        Repeating the same action with the same parameters on the same PC while the
+                        previous command is still in flight (within a few seconds) returns the existing
+                        command instead of sending it again. Send an `Idempotency-Key` header to make
+                        retries safe: every request with the same key returns the command created by
+                        the first one. Reusing a key with a different body is rejected with 422.
                         """)
         @ApiResponses(value = {
-                        @ApiResponse(responseCode = "202", description = "Command created and sent successfully to RabbitMQ", content = @Content(schema = @Schema(implementation = Command.class))),
+                        @ApiResponse(responseCode = "202", description = "Command created and queued for RabbitMQ (or existing duplicate returned)", content = @Content(schema = @Schema(implementation = Command.class))),
                         @ApiResponse(responseCode = "400", description = "Invalid data (invalid room or pc_id)"),
                         @ApiResponse(responseCode = "401", description = "User not authenticated"),
-                        @ApiResponse(responseCode = "404", description = "PC not found in specified room")
+                        @ApiResponse(responseCode = "404", description = "PC not found in specified room"),
+                        @ApiResponse(responseCode = "422", description = "Idempotency-Key already used with a different request")
         })
         @PostMapping
-        public ResponseEntity<Command> createCommand(@Valid @RequestBody CommandRequest request) {
+        public ResponseEntity<Command> createCommand(@Valid @RequestBody CommandRequest request,
+                        @Parameter(description = "Client key that makes retries return the same command") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
                 // If action is INSTALL_APP, resolve the real command from DB if possible and if
                 // parameter is a keyword
                 if ("INSTALL_APP".equals(request.getAction()) && request.getParameters() != null) {
@@ -92,10 +114,67 @@ public class CommandController {
                         }
                 }
 
-                Command command = commandService.createCommand(request);
+                Command command = commandService.createCommand(request, idempotencyKey);
                 return ResponseEntity.status(HttpStatus.ACCEPTED).body(command);
         }
 
+        /**
+         * Creates the same command for several computers of a room.
+         * Endpoint: POST /api/commands/batch
+         *
+         * @param request BatchCommandRequest with room, target PCs and action
+         * @return Batch ID plus the command ID created for each PC
+         */
+        @Operation(summary = "Create and send a command to several PCs", description = """
+                        Creates the same command for a list of PCs of a room, for the PCs of the room in an IPv4 subnet, or for every PC of the room.
+
+                        PROCESS:
+                        1. Resolves all target PCs from the in-memory PC directory (subnets by IP range)
+                        2. Inserts every command row and its outbox entry in JDBC batches
+                        3. The outbox relay publishes the messages in batches with publisher confirms
+                        4. Command status changes to SENT once the broker confirms
+
+                        EXAMPLE:
+                        To shutdown every PC in Room 4:
+                        {
+                          "salaNumber": 4,
+                          "all": true,
+                          "action": "SHUTDOWN"
+                        }
+
+                        To lock PCs 1, 2 and 3 in Room 2:
+                        {
+                          "salaNumber": 2,
+                          "pcIds": [1, 2, 3],
+                          "action": "LOCK_SESSION"
+                        }
+
+                        To reboot the PCs of Room 4 in 10.0.120.0/24:
+                        {
+                          "salaNumber": 4,
+                          "subnet": "10.0.120.0/24",
+                          "action": "REBOOT"
+                        }
+                        """)
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "202", description = "Batch created and queued for RabbitMQ", content = @Content(schema = @Schema(implementation = BatchCommandResponse.class))),
+                        @ApiResponse(responseCode = "400", description = "Invalid data (invalid room, action, subnet or unknown pc_id)"),
+                        @ApiResponse(responseCode = "401", description = "User not authenticated")
+        })
+        @PostMapping("/batch")
+        public ResponseEntity<BatchCommandResponse> createBatch(@Valid @RequestBody BatchCommandRequest request) {
+                if ("INSTALL_APP".equals(request.getAction()) && request.getParameters() != null) {
+                        try {
+                                request.setParameters(installableAppService.getCommandForApp(request.getParameters()));
+                        } catch (Exception e) {
+                                // If not found in DB, keep the keyword as is (same fallback as POST /commands)
+                        }
+                }
+
+                BatchCommandResponse response = commandService.createBatch(request);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        }
+
         // ==========================================
         // ENDPOINTS DE PRUEBA (TEST ENDPOINTS)
         // ==========================================
@@ -216,29 +295,135 @@ public class CommandController {
         }
 
         /**
-         * Gets all commands for a specific computer by name.
+         * Gets the command history of a specific computer by name, newest first.
          * Endpoint: GET /api/commands/computer/{computerName}
          *
          * @param computerName Computer name
-         * @return List of commands
+         * @param cursor       Cursor returned by the previous page
+         * @param size         Page size
+         * @return One page of commands
          */
         @Operation(summary = "Get command history by computer", description = """
-                        Retrieves all commands executed on a specific computer by its name.
-                        Useful for viewing complete action history on a PC.
+                        Retrieves the commands executed on a specific computer by its name, newest first.
+                        Useful for viewing the action history of a PC.
 
                         EXAMPLE: GET /api/commands/computer/PC 1
 
-                        Returns all commands (pending, executed, failed) for that PC.
+                        Results are paginated like GET /api/commands: pass the returned `nextCursor`
+                        as `cursor` to get the next page.
                         """)
         @ApiResponses(value = {
-                        @ApiResponse(responseCode = "200", description = "Command list retrieved successfully"),
+                        @ApiResponse(responseCode = "200", description = "Command page retrieved successfully"),
+                        @ApiResponse(responseCode = "400", description = "Invalid page size"),
                         @ApiResponse(responseCode = "401", description = "Not authenticated")
         })
         @GetMapping("/computer/{computerName}")
-        public ResponseEntity<List<Command>> getCommandsByComputer(
-                        @Parameter(description = "Computer name (e.g., 'PC 1', 'PC 2')", example = "PC 1") @PathVariable String computerName) {
-                List<Command> commands = commandService.getCommandsByComputer(computerName);
-                return ResponseEntity.ok(commands);
+        public ResponseEntity<CommandPageResponse> getCommandsByComputer(
+                        @Parameter(description = "Computer name (e.g., 'PC 1', 'PC 2')", example = "PC 1") @PathVariable String computerName,
+                        @Parameter(description = "Cursor (nextCursor of the previous page)") @RequestParam(required = false) Long cursor,
+                        @Parameter(description = "Page size (default 50, max 200)", example = "50") @RequestParam(required = false) Integer size) {
+                CommandFilter filter = CommandFilter.builder().computerName(computerName).build();
+                return ResponseEntity.ok(commandService.searchCommands(filter, cursor, size));
+        }
+
+        /**
+         * Gets the number of commands waiting for an agent response.
+         * Endpoint: GET /api/commands/in-flight
+         *
+         * @return Total and per-room in-flight counts
+         */
+        @Operation(summary = "Get in-flight command counts", description = """
+                        Returns how many commands were issued but have no final result yet,
+                        in total and per room. Served from memory (no database query).
+
+                        Useful for backpressure: avoid queuing new bulk operations on a room
+                        that still has many commands in flight.
+                        """)
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Counts retrieved successfully"),
+                        @ApiResponse(responseCode = "401", description = "Not authenticated")
+        })
+        @GetMapping("/in-flight")
+        public ResponseEntity<Map<String, Object>> getInFlightCommands() {
+                return ResponseEntity.ok(commandService.getInFlightSummary());
+        }
+
+        /**
+         * Gets the queue depth of each dispatch lane.
+         * Endpoint: GET /api/commands/lanes
+         *
+         * @return Per-lane outbox and in-flight counts, plus broker queue depth
+         */
+        @Operation(summary = "Get command lane metrics", description = """
+                        Commands are dispatched in three lanes, delivered by priority on the pc_commands queue:
+                        - **URGENT** (priority 9): LOCK_SESSION, SHUTDOWN, DISABLE_INTERNET, ENABLE_INTERNET
+                        - **NORMAL** (priority 5): every other interactive action
+                        - **BULK** (priority 1): INSTALL_APP, INSTALL_SNAP, FORMAT
+
+                        For each lane returns how many commands wait in the outbox and how many were sent
+                        without a response yet. `broker` holds the depth of the shared pc_commands queue.
+                        """)
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Metrics retrieved successfully"),
+                        @ApiResponse(responseCode = "401", description = "Not authenticated")
+        })
+        @GetMapping("/lanes")
+        public ResponseEntity<Map<String, Object>> getLaneMetrics() {
+                return ResponseEntity.ok(commandService.getLaneSummary());
+        }
+
+        /**
+         * Streams the command audit log as NDJSON or CSV.
+         * Endpoint: GET /api/commands/export
+         *
+         * @return Streaming response with the exported commands
+         */
+        @Operation(summary = "Export command history", description = """
+                        Downloads every command matching the filters, oldest first, including the user
+                        who created it. Rows are streamed to the client as they are read, so the export
+                        can cover a whole semester without loading it in memory.
+
+                        **Parameters:**
+                        - `format`: `ndjson` (one JSON command per line, default) or `csv`
+                        - `gzip`: `true` to download a gzip-compressed file
+                        - Same optional filters as GET /api/commands (`salaNumber`, `pcId`, `action`,
+                          `status`, `userEmail`, `from`, `to`)
+
+                        EXAMPLE: GET /api/commands/export?format=csv&from=2025-01-01T00:00:00&gzip=true
+                        """)
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Export streamed successfully"),
+                        @ApiResponse(responseCode = "400", description = "Invalid format or filter"),
+                        @ApiResponse(responseCode = "401", description = "Not authenticated")
+        })
+        @GetMapping("/export")
+        public ResponseEntity<StreamingResponseBody> exportCommands(
+                        @Parameter(description = "Output format: ndjson or csv", example = "ndjson") @RequestParam(defaultValue = "ndjson") String format,
+                        @Parameter(description = "Gzip the output", example = "false") @RequestParam(defaultValue = "false") boolean gzip,
+                        @Parameter(description = "Room number (1-4)", example = "4") @RequestParam(required = false) Integer salaNumber,
+                        @Parameter(description = "PC ID in the room table", example = "1") @RequestParam(required = false) Long pcId,
+                        @Parameter(description = "Action", example = "SHUTDOWN") @RequestParam(required = false) String action,
+                        @Parameter(description = "Command status", example = "EXECUTED") @RequestParam(required = false) Command.CommandStatus status,
+                        @Parameter(description = "Email of the user who created the command") @RequestParam(required = false) String userEmail,
+                        @Parameter(description = "Created at or after (ISO date-time)", example = "2025-01-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                        @Parameter(description = "Created before (ISO date-time)", example = "2025-07-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+                CommandExportService.Format exportFormat = CommandExportService.Format.from(format);
+                CommandFilter filter = CommandFilter.builder()
+                                .salaNumber(salaNumber)
+                                .pcId(pcId)
+                                .action(action)
+                                .status(status)
+                                .userEmail(userEmail)
+                                .from(from)
+                                .to(to)
+                                .build();
+
+                String fileName = "commands." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+                StreamingResponseBody body = out -> commandExportService.export(filter, exportFormat, gzip, out);
+                return ResponseEntity.ok()
+                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                                .body(body);
         }
 
         /**
@@ -253,7 +438,7 @@ public class CommandController {
                         Includes information about:
                         - Target room and PC
                         - Executed action
-                        - Current status (PENDING, SENT, EXECUTED, FAILED)
+                        - Current status (PENDING, SENT, EXECUTED, FAILED, TIMED_OUT)
                         - Creation, send, and execution timestamps
                         - Agent result message
                         - User who executed it
@@ -271,57 +456,83 @@ public class CommandController {
         }
 
         /**
-         * Gets all commands.
+         * Gets the command history with optional filters, newest first.
          * Endpoint: GET /api/commands
          *
-         * @return List of all commands
+         * @return One page of commands and the cursor of the next page
          */
-        @Operation(summary = "Get all commands", description = """
-                        Retrieves complete list of all commands registered in the system without filters.
+        @Operation(summary = "Get command history", description = """
+                        Retrieves the commands registered in the system, newest first, one page at a time.
+
+                        **Pagination (keyset):**
+                        - `size`: page size (default 50, max 200)
+                        - `cursor`: the `nextCursor` returned by the previous page; omit it for the first page
+                        - `nextCursor` is null when there are no more results
+
+                        **Optional filters (combined with AND):**
+                        - `salaNumber`, `pcId`: target room and PC
+                        - `action`: SHUTDOWN, REBOOT, WAKE_ON_LAN, LOCK_SESSION, BLOCK_WEBSITE, etc.
+                        - `status`: PENDING, SENT, EXECUTED, FAILED, TIMED_OUT
+                        - `userEmail`: user who created the command
+                        - `from` / `to`: creation time range (ISO date-time, `from` inclusive, `to` exclusive)
 
                         **Information returned for each command:**
                         - Command ID
                         - Target room and PC (salaNumber, pcId, computerName, targetIp, macAddress)
-                        - Executed action (SHUTDOWN, REBOOT, WAKE_ON_LAN, LOCK_SESSION, BLOCK_WEBSITE, etc.)
-                        - Optional JSON parameters
-                        - Current status (PENDING, SENT, EXECUTED, FAILED)
-                        - Send (sentAt) and execution (executedAt) timestamps
+                        - Executed action and optional parameters
+                        - Current status, send (sentAt) and execution (executedAt) timestamps
                         - Result message from C# agent
                         - Email of user who created the command
                         - Creation timestamp
 
-                        **Useful for:**
-                        - Admin panel showing complete history
-                        - Audit of all performed actions
-                        - System usage analysis and statistics
-
-                        **Note:** List can be extensive. Consider using status filters if you only need specific commands.
+                        EXAMPLE: GET /api/commands?salaNumber=4&status=FAILED&size=20
                         """)
         @ApiResponses(value = {
-                        @ApiResponse(responseCode = "200", description = "Command list retrieved successfully"),
+                        @ApiResponse(responseCode = "200", description = "Command page retrieved successfully"),
+                        @ApiResponse(responseCode = "400", description = "Invalid filter or page size"),
                         @ApiResponse(responseCode = "401", description = "Not authenticated - Invalid or missing JWT token")
         })
         @GetMapping
-        public ResponseEntity<List<Command>> getAllCommands() {
-                List<Command> commands = commandService.getAllCommands();
-                return ResponseEntity.ok(commands);
+        public ResponseEntity<CommandPageResponse> getAllCommands(
+                        @Parameter(description = "Room number (1-4)", example = "4") @RequestParam(required = false) Integer salaNumber,
+                        @Parameter(description = "PC ID in the room table", example = "1") @RequestParam(required = false) Long pcId,
+                        @Parameter(description = "Action", example = "SHUTDOWN") @RequestParam(required = false) String action,
+                        @Parameter(description = "Command status", example = "EXECUTED") @RequestParam(required = false) Command.CommandStatus status,
+                        @Parameter(description = "Email of the user who created the command") @RequestParam(required = false) String userEmail,
+                        @Parameter(description = "Created at or after (ISO date-time)", example = "2025-01-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                        @Parameter(description = "Created before (ISO date-time)", example = "2025-01-02T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                        @Parameter(description = "Cursor (nextCursor of the previous page)") @RequestParam(required = false) Long cursor,
+                        @Parameter(description = "Page size (default 50, max 200)", example = "50") @RequestParam(required = false) Integer size) {
+                CommandFilter filter = CommandFilter.builder()
+                                .salaNumber(salaNumber)
+                                .pcId(pcId)
+                                .action(action)
+                                .status(status)
+                                .userEmail(userEmail)
+                                .from(from)
+                                .to(to)
+                                .build();
+                return ResponseEntity.ok(commandService.searchCommands(filter, cursor, size));
         }
 
         /**
-         * Gets all commands with a specific status.
+         * Gets the commands with a specific status, newest first.
          * Endpoint: GET /api/commands/status/{status}
          *
-         * @param status Command status (PENDING, SENT, EXECUTED, FAILED)
-         * @return List of commands
+         * @param status Command status (PENDING, SENT, EXECUTED, FAILED, TIMED_OUT)
+         * @param cursor Cursor returned by the previous page
+         * @param size   Page size
+         * @return One page of commands
          */
         @Operation(summary = "Get commands by status", description = """
-                        Retrieves all commands filtered by a specific status in the execution flow.
+                        Retrieves the commands in a specific status of the execution flow, newest first.
 
                         **Available statuses:**
-                        - **PENDING**: Command created but not yet sent to RabbitMQ (initial state)
+                        - **PENDING**: Command created and waiting in the outbox, not yet confirmed by RabbitMQ (initial state)
                         - **SENT**: Command sent to RabbitMQ queue, waiting for C# agent to process
                         - **EXECUTED**: Command executed successfully by C# agent on target PC
                         - **FAILED**: Error during sending or execution of command
+                        - **TIMED_OUT**: The agent did not report a result before the action's deadline
 
                         **Usage examples:**
                         - `GET /api/commands/status/PENDING` - View commands not yet sent
@@ -330,23 +541,20 @@ public class CommandController {
                         - `GET /api/commands/status/FAILED` - Investigate failed commands for retry or debugging
 
                         **Returned information:**
-                        Same complete structure as GET /api/commands, but filtered by status.
-
-                        **Useful for:**
-                        - Dashboards showing pending or in-process commands
-                        - Notification system for failed commands
-                        - Analysis of command success/failure rate
+                        Same paginated structure as GET /api/commands, filtered by status.
                         """)
         @ApiResponses(value = {
-                        @ApiResponse(responseCode = "200", description = "Command list filtered successfully"),
-                        @ApiResponse(responseCode = "400", description = "Invalid status - Allowed values: PENDING, SENT, EXECUTED, FAILED"),
+                        @ApiResponse(responseCode = "200", description = "Command page filtered successfully"),
+                        @ApiResponse(responseCode = "400", description = "Invalid status - Allowed values: PENDING, SENT, EXECUTED, FAILED, TIMED_OUT"),
                         @ApiResponse(responseCode = "401", description = "Not authenticated - Invalid or missing JWT token")
         })
         @GetMapping("/status/{status}")
-        public ResponseEntity<List<Command>> getCommandsByStatus(
-                        @Parameter(description = "Command status", example = "EXECUTED") @PathVariable Command.CommandStatus status) {
-                List<Command> commands = commandService.getCommandsByStatus(status);
-                return ResponseEntity.ok(commands);
+        public ResponseEntity<CommandPageResponse> getCommandsByStatus(
+                        @Parameter(description = "Command status", example = "EXECUTED") @PathVariable Command.CommandStatus status,
+                        @Parameter(description = "Cursor (nextCursor of the previous page)") @RequestParam(required = false) Long cursor,
+                        @Parameter(description = "Page size (default 50, max 200)", example = "50") @RequestParam(required = false) Integer size) {
+                CommandFilter filter = CommandFilter.builder().status(status).build();
+                return ResponseEntity.ok(commandService.searchCommands(filter, cursor, size));
         }
 
         /**
@@ -396,7 +604,7 @@ public class CommandController {
                         """)
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Status updated successfully - Returns complete command", content = @Content(schema = @Schema(implementation = Command.class))),
-                        @ApiResponse(responseCode = "400", description = "Invalid status or incorrect JSON format - Allowed values: PENDING, SENT, EXECUTED, FAILED"),
+                        @ApiResponse(responseCode = "400", description = "Invalid status or incorrect JSON format - Allowed values: PENDING, SENT, EXECUTED, FAILED, TIMED_OUT"),
                         @ApiResponse(responseCode = "401", description = "Not authenticated - Invalid or missing JWT token"),
                         @ApiResponse(responseCode = "404", description = "Command not found - Invalid ID")
         })
@@ -414,7 +622,7 @@ public class CommandController {
                         status = Command.CommandStatus.valueOf(statusStr.toUpperCase());
                 } catch (IllegalArgumentException e) {
                         throw new IllegalArgumentException("Invalid status value: " + statusStr +
-                                        ". Valid values are: PENDING, SENT, EXECUTED, FAILED");
+                                        ". Valid values are: PENDING, SENT, EXECUTED, FAILED, TIMED_OUT");
                 }
 
                 String resultMessage = request.get("resultMessage");
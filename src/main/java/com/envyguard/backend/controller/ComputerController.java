@@ -1,13 +1,20 @@
 package com.envyguard.backend.controller;
 
 import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.service.FleetSnapshotCache;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * REST controller for computer monitoring.
@@ -24,22 +31,22 @@ import java.util.List;
 @Tag(name = "Computers Status (Deprecated)", description = "DEPRECATED - Use /api/public/computers instead")
 public class ComputerController {
 
-    private final com.envyguard.backend.repository.Sala4Repository sala4Repository;
+    private final FleetSnapshotCache fleetSnapshotCache;
 
-    @Operation(summary = "List all monitored computers (DEPRECATED)", description = "DEPRECATED: Use GET /api/public/computers instead. This endpoint may return 403 due to security configuration issues.")
+    @Operation(summary = "List all monitored computers (DEPRECATED)", description = "DEPRECATED: Use GET /api/public/computers instead. This endpoint may return 403 due to security configuration issues. Supports If-None-Match with the returned ETag (304 Not Modified).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of computers", content = @Content(array = @ArraySchema(schema = @Schema(implementation = Computer.class)))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match")
+    })
     @GetMapping
-    public List<Computer> getAllComputers() {
-        return sala4Repository.findAll().stream().map(sala4 -> {
-            return Computer.builder()
-                    .id(sala4.getId())
-                    .name(sala4.getNombrePc())
-                    .ipAddress(sala4.getIp())
-                    .macAddress(sala4.getMac())
-                    .status(sala4.getStatus() != null ? sala4.getStatus() : Computer.ComputerStatus.OFFLINE)
-                    .lastSeen(sala4.getLastSeen())
-                    .roomNumber(4)
-                    .labName("Sala 4")
-                    .build();
-        }).collect(java.util.stream.Collectors.toList());
+    public ResponseEntity<byte[]> getAllComputers(WebRequest request) {
+        FleetSnapshotCache.Snapshot snapshot = fleetSnapshotCache.get(FleetSnapshotCache.View.COMPUTERS);
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
     }
 }
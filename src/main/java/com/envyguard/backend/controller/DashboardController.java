@@ -1,19 +1,32 @@
 package com.envyguard.backend.controller;
 
+import com.envyguard.backend.dto.UptimeReport;
 import com.envyguard.backend.entity.Computer;
 import com.envyguard.backend.repository.BlockedWebsiteRepository;
+import com.envyguard.backend.repository.UptimeRepository;
+import com.envyguard.backend.service.ComputerStatusService;
+import com.envyguard.backend.service.PcDirectory;
+import com.envyguard.backend.service.ScreenChangeDetector;
+import com.envyguard.backend.service.ScreenStreamBuffer;
+import com.envyguard.backend.service.ScreenThumbnailer;
+import com.envyguard.backend.service.StatusPipelineMetrics;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,11 +39,14 @@ import java.util.Map;
 @Tag(name = "Dashboard", description = "Dashboard statistics and metrics")
 public class DashboardController {
 
-    private final com.envyguard.backend.repository.Sala1Repository sala1Repository;
-    private final com.envyguard.backend.repository.Sala2Repository sala2Repository;
-    private final com.envyguard.backend.repository.Sala3Repository sala3Repository;
-    private final com.envyguard.backend.repository.Sala4Repository sala4Repository;
+    private final PcDirectory pcDirectory;
+    private final ComputerStatusService computerStatusService;
+    private final StatusPipelineMetrics statusPipelineMetrics;
+    private final ScreenStreamBuffer screenStreamBuffer;
+    private final ScreenThumbnailer screenThumbnailer;
+    private final ScreenChangeDetector screenChangeDetector;
     private final BlockedWebsiteRepository blockedWebsiteRepository;
+    private final UptimeRepository uptimeRepository;
 
     /**
      * Helper endpoint to get all stats in one call.
@@ -45,14 +61,11 @@ public class DashboardController {
         Map<String, Long> stats = new HashMap<>();
 
         // Card 1: Total Computadores (suma de todas las salas)
-        long totalComputers = sala1Repository.count()
-                + sala2Repository.count()
-                + sala3Repository.count()
-                + sala4Repository.count();
+        long totalComputers = pcDirectory.count();
         stats.put("totalComputers", totalComputers);
 
-        // Card 2: Computadores Prendidos (ONLINE) - solo Sala 4 tiene status
-        stats.put("onlineComputers", sala4Repository.countByStatus(Computer.ComputerStatus.ONLINE));
+        // Card 2: Computadores Prendidos (ONLINE) - todas las salas, desde memoria
+        stats.put("onlineComputers", computerStatusService.countByStatus(Computer.ComputerStatus.ONLINE));
 
         // Card 3: Sitios Bloqueados
         stats.put("blockedWebsites", blockedWebsiteRepository.count());
@@ -66,17 +79,14 @@ public class DashboardController {
     @Operation(summary = "Get total computers count", description = "Returns the total count of computers across all salas (1, 2, 3, and 4)")
     @GetMapping("/stats/total-computers")
     public ResponseEntity<Long> getTotalComputers() {
-        long totalComputers = sala1Repository.count()
-                + sala2Repository.count()
-                + sala3Repository.count()
-                + sala4Repository.count();
+        long totalComputers = pcDirectory.count();
         return ResponseEntity.ok(totalComputers);
     }
 
-    @Operation(summary = "Get online computers count")
+    @Operation(summary = "Get online computers count", description = "Returns the number of ONLINE computers across all salas (1, 2, 3, and 4)")
     @GetMapping("/stats/online-computers")
     public ResponseEntity<Long> getOnlineComputers() {
-        return ResponseEntity.ok(sala4Repository.countByStatus(Computer.ComputerStatus.ONLINE));
+        return ResponseEntity.ok(computerStatusService.countByStatus(Computer.ComputerStatus.ONLINE));
     }
 
     @Operation(summary = "Get blocked websites count")
@@ -84,4 +94,49 @@ public class DashboardController {
     public ResponseEntity<Long> getBlockedWebsites() {
         return ResponseEntity.ok(blockedWebsiteRepository.count());
     }
+
+    @Operation(summary = "Get PC status pipeline metrics", description = "Returns total count and recent rate (per second) of each stage of the pc_status_updates pipeline: RECEIVED, DECODED, DECODE_FAILED, UNRESOLVED, RATE_LIMITED, INGEST_COALESCED, INGEST_DROPPED, APPLIED, HEARTBEAT_MISSED, DEFERRED, PERSISTED, PERSIST_FAILED, COALESCED, BROADCAST.")
+    @GetMapping("/status-pipeline")
+    public ResponseEntity<Map<String, Object>> getStatusPipelineMetrics() {
+        return ResponseEntity.ok(statusPipelineMetrics.snapshot());
+    }
+
+    @Operation(summary = "Get screen stream metrics", description = "Returns, for each WebSocket session watching screens, the frames pending in its latest-frame slots, the frames sent and the frames dropped (overwritten by a newer frame before being sent, or over the per-session slot limit).")
+    @GetMapping("/screen-streams")
+    public ResponseEntity<Map<String, Map<String, Object>>> getScreenStreamMetrics() {
+        return ResponseEntity.ok(screenStreamBuffer.snapshot());
+    }
+
+    @Operation(summary = "Get screen thumbnail metrics", description = "Returns the grid thumbnails generated, the frames coalesced while their PC waited for a worker, rejected because the thumbnail pool was full or not decodable, and the number of PCs with a cached thumbnail.")
+    @GetMapping("/screen-thumbnails")
+    public ResponseEntity<Map<String, Object>> getScreenThumbnailMetrics() {
+        return ResponseEntity.ok(screenThumbnailer.snapshot());
+    }
+
+    @Operation(summary = "Get unchanged-frame suppression metrics", description = "Returns, for each PC (\"sala/pcId\"), the screen frames relayed and suppressed because they barely changed since the last relayed frame (perceptual hash), with the bytes relayed and the bytes saved.")
+    @GetMapping("/screen-changes")
+    public ResponseEntity<Map<String, Map<String, Object>>> getScreenChangeMetrics() {
+        return ResponseEntity.ok(screenChangeDetector.snapshot());
+    }
+
+    @Operation(summary = "Get PC uptime report", description = "Returns the availability (ONLINE seconds / seconds with known status) over a day range, read from the daily rollups of the status history. Group by PC (default), SALA or DAY; optionally filter by sala and PC. Days are inclusive.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Uptime report retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid range")
+    })
+    @GetMapping("/uptime")
+    public ResponseEntity<List<UptimeReport>> getUptime(
+            @Parameter(description = "First day (ISO date)", example = "2026-10-01") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last day (ISO date)", example = "2026-10-17") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Room number (1-4)", example = "4") @RequestParam(required = false) Integer sala,
+            @Parameter(description = "PC ID", example = "1") @RequestParam(required = false) Long pcId,
+            @Parameter(description = "PC, SALA or DAY", example = "PC") @RequestParam(defaultValue = "PC") UptimeRepository.GroupBy groupBy) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' debe ser anterior o igual a 'to'");
+        }
+        if (pcId != null && sala == null) {
+            throw new IllegalArgumentException("pcId requiere sala");
+        }
+        return ResponseEntity.ok(uptimeRepository.summarize(from, to, sala, pcId, groupBy));
+    }
 }
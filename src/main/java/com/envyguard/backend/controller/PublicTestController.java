@@ -4,12 +4,23 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.envyguard.backend.dto.FleetSyncResponse;
+import com.envyguard.backend.entity.Sala4;
+import com.envyguard.backend.service.ComputerStatusService;
+import com.envyguard.backend.service.FleetSnapshotCache;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,7 +33,8 @@ import java.util.Map;
 @Tag(name = "Public Endpoints", description = "Public API endpoints - no authentication required")
 public class PublicTestController {
 
-    private final com.envyguard.backend.repository.Sala4Repository sala4Repository;
+    private final ComputerStatusService computerStatusService;
+    private final FleetSnapshotCache fleetSnapshotCache;
 
     @GetMapping("/test")
     public Map<String, String> test() {
@@ -46,12 +58,35 @@ public class PublicTestController {
      * List all monitored computers with their current status.
      * This is the main endpoint for the Radar/Dashboard.
      */
-    @Operation(summary = "List all monitored computers", description = "Returns a list of computers with their current status (ONLINE/OFFLINE). Used by the Radar.")
+    @Operation(summary = "List all monitored computers", description = "Returns a list of computers with their current status (ONLINE/OFFLINE). Used by the Radar. Served from the in-memory fleet state with a strong ETag: send it back in If-None-Match to get 304 Not Modified while nothing changed.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of computers retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "List of computers retrieved successfully", content = @Content(array = @ArraySchema(schema = @Schema(implementation = Sala4.class)))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match")
     })
     @GetMapping("/computers")
-    public List<com.envyguard.backend.entity.Sala4> getAllComputers() {
-        return sala4Repository.findAll();
+    public ResponseEntity<byte[]> getAllComputers(WebRequest request) {
+        FleetSnapshotCache.Snapshot snapshot = fleetSnapshotCache.get(FleetSnapshotCache.View.SALA4);
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
+    }
+
+    /**
+     * Fleet state for clients of the /topic/fleet delta stream.
+     * Call it without {@code since} on first load and with the last applied
+     * version on reconnect.
+     */
+    @Operation(summary = "Get fleet snapshot or deltas", description = "Without 'since', returns a snapshot of every PC of the four salas and the fleet version it corresponds to. With 'since', returns only the deltas published after that version, or a snapshot (snapshot = true) if they are no longer buffered. Afterwards apply the deltas of each /topic/fleet frame (a JSON array) whose version is greater than the returned version.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Snapshot or deltas retrieved successfully")
+    })
+    @GetMapping("/fleet")
+    public FleetSyncResponse getFleet(
+            @Parameter(description = "Fleet version the client already has") @RequestParam(required = false) Long since) {
+        return computerStatusService.syncFleet(since);
     }
 }
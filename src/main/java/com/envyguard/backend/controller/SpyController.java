@@ -1,5 +1,6 @@
 package com.envyguard.backend.controller;
 
+import com.envyguard.backend.service.ScreenThumbnailer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -7,11 +8,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.amqp.core.AmqpTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
  * Controller for exam monitoring control.
- * Sends START/STOP commands to monitoring agents.
+ * Sends START/STOP commands to monitoring agents and serves the latest
+ * screen thumbnails.
  */
 @RestController
 @RequestMapping("/control")
@@ -22,6 +26,9 @@ public class SpyController {
     @Autowired
     private AmqpTemplate amqpTemplate;
 
+    @Autowired
+    private ScreenThumbnailer screenThumbnailer;
+
     @Operation(summary = "Control exam monitoring", description = "Sends START or STOP command to all monitoring agents via RabbitMQ fanout exchange.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Control command sent successfully"),
@@ -35,4 +42,19 @@ public class SpyController {
         amqpTemplate.convertAndSend("spy.control", "", action.toUpperCase());
         return "Order sent: " + action;
     }
+
+    @Operation(summary = "Get latest screen thumbnail", description = "Returns the latest grid thumbnail (JPEG) of a PC, so a grid view can show every screen before the next frames arrive on /topic/screens/{sala}. Requires authentication, unlike the other /control endpoints.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Thumbnail retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "User not authenticated"),
+            @ApiResponse(responseCode = "404", description = "No thumbnail for the PC yet")
+    })
+    @GetMapping(value = "/screens/{sala}/{pcId}/thumbnail", produces = MediaType.IMAGE_JPEG_VALUE)
+    public ResponseEntity<byte[]> getThumbnail(
+            @Parameter(description = "Room number (1-4)", example = "4") @PathVariable int sala,
+            @Parameter(description = "PC ID", example = "1") @PathVariable Long pcId) {
+        return screenThumbnailer.getLatest(sala, pcId)
+                .map(thumbnail -> ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).body(thumbnail.getJpeg()))
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 /**
  * DTO for command messages sent to RabbitMQ in the format expected by C# agents.
  * 
@@ -15,9 +17,15 @@ import lombok.NoArgsConstructor;
  * {
  *   "action": "shutdown",
  *   "targetIp": "192.168.1.50",
- *   "parameters": ""
+ *   "parameters": "",
+ *   "commandId": 42,
+ *   "issuedAt": "2025-01-01T10:00:00Z",
+ *   "deadline": "2025-01-01T10:05:00Z"
  * }
  * 
+ * commandId/issuedAt/deadline forman el sobre de correlación: el agente debe
+ * devolver el mismo commandId en pc_responses.
+ * 
  * Wake-on-LAN (sin targetIp):
  * {
  *   "action": "wakeup",
@@ -61,4 +69,21 @@ public class AgentCommandMessage {
      */
     @Builder.Default
     private String parameters = "";
+
+    /**
+     * ID of the command in the backend. The agent must echo it back in
+     * CommandResponse.commandId so the result can be correlated.
+     */
+    private Long commandId;
+
+    /**
+     * When the backend issued the command (UTC).
+     */
+    private Instant issuedAt;
+
+    /**
+     * Time after which the backend considers the command expired (UTC).
+     * Agents may skip commands received after this instant.
+     */
+    private Instant deadline;
 }
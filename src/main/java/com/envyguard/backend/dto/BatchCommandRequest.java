@@ -0,0 +1,47 @@
+package com.envyguard.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para solicitudes de comandos en lote.
+ * Permite enviar la misma acción a toda una sala, a los PCs de una subred o a una lista
+ * de PCs en una sola llamada.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Solicitud para enviar el mismo comando a varios PCs de una sala")
+public class BatchCommandRequest {
+
+    @NotNull(message = "Sala number is required")
+    @Min(value = 1, message = "Sala number must be between 1 and 4")
+    @Max(value = 4, message = "Sala number must be between 1 and 4")
+    @Schema(description = "Número de la sala donde están los PCs (1-4)", example = "4", minimum = "1", maximum = "4")
+    private Integer salaNumber;
+
+    @Schema(description = "IDs de los PCs en la tabla sala_X. Se ignora cuando 'all' es true.", example = "[1, 2, 3]")
+    private List<Long> pcIds;
+
+    @Schema(description = "Si es true, el comando se envía a todos los PCs de la sala", example = "false")
+    private boolean all;
+
+    @Schema(description = "Subred IPv4 en notación CIDR: el comando se envía a los PCs de la sala con IP en esa subred. "
+            + "Se ignora cuando 'all' es true y tiene prioridad sobre 'pcIds'.", example = "10.0.120.0/24")
+    private String subnet;
+
+    @NotBlank(message = "Action is required")
+    @Schema(description = "Acción a ejecutar en los equipos remotos (mismos valores que POST /commands)", example = "SHUTDOWN")
+    private String action;
+
+    @Schema(description = "Parámetros adicionales para el comando", example = "")
+    private String parameters;
+}
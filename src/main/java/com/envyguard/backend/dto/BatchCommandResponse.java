@@ -0,0 +1,39 @@
+package com.envyguard.backend.dto;
+
+import com.envyguard.backend.entity.Command;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO returned after creating a batch of commands.
+ * Contains the batch identifier and the command created for each target PC.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCommandResponse {
+
+    private String batchId;
+    private Integer salaNumber;
+    private String action;
+    private List<Item> commands;
+
+    /**
+     * Command created for a single PC of the batch.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private Long pcId;
+        private Long commandId;
+        private String computerName;
+        private Command.CommandStatus status;
+    }
+}
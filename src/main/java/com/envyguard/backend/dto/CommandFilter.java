@@ -0,0 +1,36 @@
+package com.envyguard.backend.dto;
+
+import com.envyguard.backend.entity.Command;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional filters for the command history. Null fields are not applied.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommandFilter {
+
+    private Integer salaNumber;
+    private Long pcId;
+    private String computerName;
+    private String action;
+    private Command.CommandStatus status;
+    private String userEmail;
+
+    /**
+     * Inclusive lower bound on created_at.
+     */
+    private LocalDateTime from;
+
+    /**
+     * Exclusive upper bound on created_at.
+     */
+    private LocalDateTime to;
+}
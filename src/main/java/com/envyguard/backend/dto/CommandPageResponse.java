@@ -0,0 +1,31 @@
+package com.envyguard.backend.dto;
+
+import com.envyguard.backend.entity.Command;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the command history, newest first.
+ * Pass {@code nextCursor} as the {@code cursor} parameter to get the next page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Página del historial de comandos (más recientes primero)")
+public class CommandPageResponse {
+
+    @Schema(description = "Comandos de la página")
+    private List<Command> items;
+
+    @Schema(description = "Cursor para la siguiente página (null si no hay más)", example = "1523")
+    private Long nextCursor;
+
+    @Schema(description = "Tamaño de página aplicado", example = "50")
+    private int size;
+}
@@ -0,0 +1,39 @@
+package com.envyguard.backend.dto;
+
+import com.envyguard.backend.entity.Computer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Change of one PC of the fleet, published on /topic/fleet inside array frames.
+ * Only the fields that changed are present; applying a delta twice is harmless.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Cambio de estado de un PC de la flota")
+public class FleetDelta {
+
+    @Schema(description = "Versión de la flota tras aplicar este cambio", example = "1042")
+    private long version;
+
+    @Schema(description = "Número de sala", example = "4")
+    private int sala;
+
+    @Schema(description = "ID del PC en la tabla de la sala", example = "12")
+    private Long pcId;
+
+    @Schema(description = "Nuevo estado (solo si cambió)", example = "OFFLINE")
+    private Computer.ComputerStatus status;
+
+    @Schema(description = "Nueva última conexión (solo si cambió)")
+    private LocalDateTime lastSeen;
+}
@@ -0,0 +1,39 @@
+package com.envyguard.backend.dto;
+
+import com.envyguard.backend.entity.Computer;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Full state of one PC in a fleet snapshot.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Estado completo de un PC de la flota")
+public class FleetPcState {
+
+    @Schema(description = "Número de sala", example = "4")
+    private int sala;
+
+    @Schema(description = "ID del PC en la tabla de la sala", example = "12")
+    private Long pcId;
+
+    @Schema(description = "Nombre del PC", example = "PC-12")
+    private String name;
+
+    @Schema(description = "Dirección IP", example = "192.168.1.112")
+    private String ip;
+
+    @Schema(description = "Estado (UNKNOWN si nunca reportó)", example = "ONLINE")
+    private Computer.ComputerStatus status;
+
+    @Schema(description = "Última conexión (null si nunca reportó)")
+    private LocalDateTime lastSeen;
+}
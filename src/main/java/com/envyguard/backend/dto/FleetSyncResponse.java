@@ -0,0 +1,35 @@
+package com.envyguard.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Fleet state for a (re)connecting client: either the deltas after the
+ * version it already has, or a full snapshot when those deltas are no longer
+ * buffered. Afterwards the client applies /topic/fleet deltas whose version is
+ * greater than {@code version}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Sincronización del estado de la flota (snapshot o deltas)")
+public class FleetSyncResponse {
+
+    @Schema(description = "Versión de la flota incluida en la respuesta", example = "1042")
+    private long version;
+
+    @Schema(description = "true si pcs es un snapshot completo, false si solo se devuelven deltas")
+    private boolean snapshot;
+
+    @Schema(description = "Estado de todos los PCs (solo si snapshot = true)")
+    private List<FleetPcState> pcs;
+
+    @Schema(description = "Cambios posteriores a la versión pedida (solo si snapshot = false)")
+    private List<FleetDelta> deltas;
+}
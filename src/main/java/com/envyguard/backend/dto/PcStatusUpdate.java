@@ -0,0 +1,35 @@
+package com.envyguard.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PC status update in the C# agent format.
+ * Also the payload broadcast on /topic/pc-status.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PcStatusUpdate {
+    @JsonProperty("PcId")
+    private Long pcId;
+
+    @JsonProperty("PcName")
+    private String pcName;
+
+    @JsonProperty("IpAddress")
+    private String ipAddress;
+
+    @JsonProperty("MacAddress")
+    private String macAddress;
+
+    @JsonProperty("Status")
+    private String status;
+
+    @JsonProperty("Timestamp")
+    private String timestamp;
+}
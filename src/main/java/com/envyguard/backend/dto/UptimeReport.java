@@ -0,0 +1,41 @@
+package com.envyguard.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Availability of one group (PC, sala or day) over the requested range.
+ * Only the fields of the requested grouping are present.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Disponibilidad de un PC, sala o día en el rango pedido")
+public class UptimeReport {
+
+    @Schema(description = "Número de sala", example = "4")
+    private Integer sala;
+
+    @Schema(description = "ID del PC en la tabla de la sala", example = "12")
+    private Long pcId;
+
+    @Schema(description = "Día (solo al agrupar por día)", example = "2026-10-17")
+    private LocalDate day;
+
+    @Schema(description = "Segundos en estado ONLINE", example = "30600")
+    private long onlineSeconds;
+
+    @Schema(description = "Segundos con estado conocido", example = "36000")
+    private long trackedSeconds;
+
+    @Schema(description = "Porcentaje de disponibilidad (online / tracked)", example = "85.0")
+    private double uptimePercent;
+}
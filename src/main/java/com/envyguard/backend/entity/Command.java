@@ -75,6 +75,10 @@ public class Command {
     @Schema(description = "Email del usuario que ejecutó el comando (para auditoría)", example = "admin@envyguard.com")
     private String userEmail;
 
+    @Column(name = "batch_id", length = 36)
+    @Schema(description = "ID del lote cuando el comando se creó con POST /commands/batch", example = "9b2f6c1e-6f0a-4a55-8f43-2f1f0f6a3c11")
+    private String batchId;
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
@@ -91,6 +95,7 @@ public class Command {
         PENDING,
         SENT,
         EXECUTED,
-        FAILED
+        FAILED,
+        TIMED_OUT
     }
 }
\ No newline at end of file
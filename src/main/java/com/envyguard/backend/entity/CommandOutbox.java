@@ -0,0 +1,52 @@
+package com.envyguard.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox entry for a command that still has to be published to RabbitMQ.
+ * Written in the same transaction as the {@link Command} and deleted by the
+ * relay once the broker confirms the message.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "command_outbox")
+public class CommandOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "command_id", nullable = false)
+    private Long commandId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    /**
+     * AMQP priority of the message (see {@link com.envyguard.backend.util.CommandLane}).
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer priority = 5;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
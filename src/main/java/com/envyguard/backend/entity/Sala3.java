@@ -35,4 +35,13 @@ public class Sala3 {
     @Column(name = "mac", length = 50)
     @Schema(description = "Dirección MAC del PC", example = "00:11:22:33:44:55")
     private String mac;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 50)
+    @Schema(description = "Estado del PC (ONLINE/OFFLINE)", example = "ONLINE")
+    private com.envyguard.backend.entity.Computer.ComputerStatus status;
+
+    @Column(name = "last_seen")
+    @Schema(description = "Última vez que se detectó activo")
+    private java.time.LocalDateTime lastSeen;
 }
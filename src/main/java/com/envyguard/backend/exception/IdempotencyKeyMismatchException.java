@@ -0,0 +1,12 @@
+package com.envyguard.backend.exception;
+
+/**
+ * Thrown when an Idempotency-Key is reused with a different request body.
+ * Mapped to 422 Unprocessable Content by {@link GlobalExceptionHandler}.
+ */
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
@@ -3,76 +3,169 @@ package com.envyguard.backend.listener;
 import com.envyguard.backend.config.RabbitMQConfig;
 import com.envyguard.backend.dto.CommandResponse;
 import com.envyguard.backend.service.CommandService;
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Listener for command responses from C# agents via RabbitMQ.
+ *
+ * Responses are consumed in batches (see
+ * {@link RabbitMQConfig#batchRabbitListenerContainerFactory}) and applied with a
+ * single batched UPDATE, so a room-wide command does not cost one transaction
+ * per PC. If applying a batch fails (e.g. the database is unavailable) the
+ * whole batch is requeued, after {@code commands.responses.retry-delay-ms},
+ * instead of being acknowledged and lost. Once a response has failed
+ * {@code commands.responses.max-attempts} times the batch is applied one
+ * response at a time and only the responses that still fail are moved to
+ * {@value RabbitMQConfig#PC_RESPONSES_DLQ}, so one bad response cannot block
+ * the single consumer of pc_responses. Malformed messages are discarded.
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 @ConditionalOnProperty(name = "spring.rabbitmq.enabled", havingValue = "true", matchIfMissing = false)
 public class CommandResponseListener {
 
     private final CommandService commandService;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectReader responseReader;
+    private final long retryDelayMs;
+    private final int maxAttempts;
+
+    // Intentos fallidos por respuesta (commandId:status); los lotes reentregados pueden agruparse distinto
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+
+    public CommandResponseListener(CommandService commandService, RabbitTemplate rabbitTemplate,
+            ObjectMapper objectMapper,
+            @Value("${commands.responses.retry-delay-ms:1000}") long retryDelayMs,
+            @Value("${commands.responses.max-attempts:5}") int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("commands.responses.max-attempts must be positive");
+        }
+        this.commandService = commandService;
+        this.rabbitTemplate = rabbitTemplate;
+        this.responseReader = objectMapper.readerFor(CommandResponse.class);
+        this.retryDelayMs = retryDelayMs;
+        this.maxAttempts = maxAttempts;
+    }
 
     /**
-     * Listens for command responses from the pc_responses queue.
+     * Listens for batches of command responses from the pc_responses queue.
+     * The whole batch is acknowledged when this method returns.
      *
-     * @param response CommandResponse from C# agent
+     * @param messages Raw messages from C# agents
+     * @throws ImmediateRequeueAmqpException If the responses could not be
+     *                                       applied and may still be retried;
+     *                                       the batch is redelivered
      */
-    @RabbitListener(queues = RabbitMQConfig.PC_RESPONSES_QUEUE)
-    public void handleCommandResponse(org.springframework.amqp.core.Message message) {
-        try {
-            // Validar que el mensaje no sea nulo
-            if (message == null || message.getBody() == null) {
-                log.warn("Received null message - ignoring");
-                return;
+    @RabbitListener(queues = RabbitMQConfig.PC_RESPONSES_QUEUE,
+            containerFactory = "batchRabbitListenerContainerFactory")
+    public void handleCommandResponses(List<Message> messages) {
+        List<Message> parsed = new ArrayList<>(messages.size());
+        List<CommandResponse> responses = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            CommandResponse response = parse(message);
+            if (response != null) {
+                parsed.add(message);
+                responses.add(response);
             }
+        }
+        if (responses.isEmpty()) {
+            return;
+        }
 
-            String jsonMessage = new String(message.getBody());
-            
-            // Validar que el mensaje no esté vacío
-            if (jsonMessage == null || jsonMessage.trim().isEmpty()) {
-                log.warn("Received empty message - ignoring");
+        try {
+            // Correlación por commandId contra el índice de comandos en curso
+            int applied = commandService.applyResponses(responses);
+            responses.forEach(response -> attempts.remove(attemptKey(response)));
+            log.info("Applied {} of {} command responses ({} messages received)",
+                    applied, responses.size(), messages.size());
+        } catch (Exception e) {
+            int attempt = responses.stream()
+                    .mapToInt(response -> attempts.merge(attemptKey(response), 1, Integer::sum))
+                    .max().orElse(1);
+            if (attempt >= maxAttempts) {
+                log.error("Error processing {} command responses after {} attempts, applying one by one: {}",
+                        responses.size(), attempt, e.getMessage(), e);
+                applyOneByOne(parsed, responses);
                 return;
             }
+            log.error("Error processing {} command responses (attempt {} of {}), requeueing batch in {} ms: {}",
+                    responses.size(), attempt, maxAttempts, retryDelayMs, e.getMessage(), e);
+            // Pausa antes de reencolar: un fallo persistente de la BD no se convierte en un bucle sin freno
+            try {
+                Thread.sleep(retryDelayMs);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ImmediateRequeueAmqpException("No se pudieron aplicar las respuestas del lote", e);
+        }
+    }
 
-            // Parsear el mensaje manualmente
-            CommandResponse response;
+    /**
+     * Applies each response on its own and moves the ones that fail to the
+     * dead-letter queue. If a message cannot be dead-lettered the whole batch
+     * is requeued, so nothing is lost.
+     */
+    private void applyOneByOne(List<Message> messages, List<CommandResponse> responses) {
+        int deadLettered = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            CommandResponse response = responses.get(i);
             try {
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                response = mapper.readValue(jsonMessage, CommandResponse.class);
+                commandService.applyResponses(List.of(response));
             } catch (Exception e) {
-                log.error("Failed to parse command response: {}", e.getMessage());
-                return; // No relanzar la excepción
+                log.error("Command response for command {} could not be applied, moving it to {}: {}",
+                        response.getCommandId(), RabbitMQConfig.PC_RESPONSES_DLQ, e.getMessage());
+                try {
+                    rabbitTemplate.send("", RabbitMQConfig.PC_RESPONSES_DLQ, messages.get(i));
+                } catch (Exception publishError) {
+                    throw new ImmediateRequeueAmqpException("No se pudo enviar la respuesta a la cola de fallidos",
+                            publishError);
+                }
+                deadLettered++;
             }
+            attempts.remove(attemptKey(response));
+        }
+        log.warn("Applied {} command responses one by one, {} dead-lettered",
+                responses.size() - deadLettered, deadLettered);
+    }
 
-            // Validar que la respuesta tenga datos válidos
-            if (response == null || response.getCommandId() == null) {
-                log.warn("Received invalid command response - ignoring");
-                return;
-            }
+    private static String attemptKey(CommandResponse response) {
+        return response.getCommandId() + ":" + response.getStatus();
+    }
+
+    private CommandResponse parse(Message message) {
+        // Validar que el mensaje no sea nulo ni esté vacío
+        if (message == null || message.getBody() == null || message.getBody().length == 0) {
+            log.warn("Received empty message - ignoring");
+            return null;
+        }
 
-            log.info("Received command response for command {}: {}", 
-                    response.getCommandId(), response.getStatus());
-            
-            commandService.updateCommandStatus(
-                    response.getCommandId(),
-                    response.getStatus(),
-                    response.getResultMessage()
-            );
-            
-            log.info("Command {} status updated to {}", 
-                    response.getCommandId(), response.getStatus());
+        CommandResponse response;
+        try {
+            response = responseReader.readValue(message.getBody());
         } catch (Exception e) {
-            log.error("Error processing command response: {}", e.getMessage(), e);
-            // NO relanzar la excepción para evitar bucles infinitos
+            log.error("Failed to parse command response: {}", e.getMessage());
+            return null;
         }
+
+        // Validar que la respuesta tenga datos válidos
+        if (response == null || response.getCommandId() == null) {
+            log.warn("Received invalid command response - ignoring");
+            return null;
+        }
+        return response;
     }
 }
-
@@ -1,20 +1,32 @@
 package com.envyguard.backend.listener;
 
 import com.envyguard.backend.config.RabbitMQConfig;
-import com.envyguard.backend.service.ComputerService;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.service.ComputerStatusService;
+import com.envyguard.backend.service.PcDirectory;
+import com.envyguard.backend.service.StatusIngestBuffer;
+import com.envyguard.backend.service.StatusPipelineMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.Optional;
+
 /**
- * Listener for PC status updates from C# agents via RabbitMQ.
- * Only processes messages when status CHANGES (optimization to reduce traffic).
+ * Single consumer of the pc_status_updates queue.
+ *
+ * Agents publish two payload shapes: the C# agent format
+ * ({@code PcId, PcName, IpAddress, MacAddress, Status}) and the legacy format
+ * ({@code ipAddress, status, hostname}). Both are decoded from the raw bytes
+ * into a JSON tree, resolved to a PC of the {@link PcDirectory} by IP (or MAC)
+ * and handed through the {@link StatusIngestBuffer} (per-PC latest-wins
+ * buffer and rate limit) to the {@link ComputerStatusService} state store,
+ * which persists and broadcasts the new status.
  */
 @Component
 @RequiredArgsConstructor
@@ -22,93 +34,80 @@ import org.springframework.stereotype.Component;
 @ConditionalOnProperty(name = "spring.rabbitmq.enabled", havingValue = "true", matchIfMissing = false)
 public class PcStatusListener {
 
-    private final ComputerService computerService;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PcDirectory pcDirectory;
+    private final StatusIngestBuffer statusIngestBuffer;
+    private final StatusPipelineMetrics metrics;
+    private final ObjectMapper objectMapper;
 
     /**
      * Listens for PC status updates from the pc_status_updates queue.
-     * Processes changes and broadcasts to WebSocket clients.
      *
      * @param message Raw message from RabbitMQ
      */
     @RabbitListener(queues = RabbitMQConfig.PC_STATUS_UPDATES_QUEUE)
-    public void handleStatusUpdate(org.springframework.amqp.core.Message message) {
+    public void handleStatusUpdate(Message message) {
+        metrics.increment(StatusPipelineMetrics.Stage.RECEIVED);
         try {
-            if (message == null || message.getBody() == null) {
-                log.warn("Received null status message - ignoring");
-                return;
-            }
-
-            String jsonMessage = new String(message.getBody());
-
-            if (jsonMessage == null || jsonMessage.trim().isEmpty()) {
+            if (message == null || message.getBody() == null || message.getBody().length == 0) {
+                metrics.increment(StatusPipelineMetrics.Stage.DECODE_FAILED);
                 log.warn("Received empty status message - ignoring");
                 return;
             }
 
-            // Parse the status update
-            PcStatusUpdate statusUpdate;
+            JsonNode node;
             try {
-                statusUpdate = objectMapper.readValue(jsonMessage, PcStatusUpdate.class);
+                node = objectMapper.readTree(message.getBody());
             } catch (Exception e) {
+                metrics.increment(StatusPipelineMetrics.Stage.DECODE_FAILED);
                 log.error("Failed to parse status update: {}", e.getMessage());
                 return;
             }
 
-            if (statusUpdate == null || statusUpdate.getPcId() == null) {
-                log.warn("Received invalid status update - ignoring");
+            // Formato del agente (PascalCase) o formato legado (camelCase)
+            String ip = text(node, "IpAddress", "ipAddress");
+            String mac = text(node, "MacAddress", "macAddress");
+            String status = text(node, "Status", "status");
+            if (status == null || (ip == null && mac == null)) {
+                metrics.increment(StatusPipelineMetrics.Stage.DECODE_FAILED);
+                log.warn("Received invalid status update - missing status or IP/MAC address");
                 return;
             }
+            metrics.increment(StatusPipelineMetrics.Stage.DECODED);
 
-            log.info("📊 Status change: PC {} ({}) is now {}",
-                    statusUpdate.getPcName(),
-                    statusUpdate.getIpAddress(),
-                    statusUpdate.getStatus());
-
-            // Update status in database
-            try {
-                computerService.updateComputerStatus(
-                        statusUpdate.getPcId(),
-                        statusUpdate.getStatus());
-            } catch (Exception e) {
-                log.error("Failed to update PC status in database: {}", e.getMessage());
+            Optional<PcDirectory.Pc> pc = pcDirectory.findByIp(ip);
+            if (pc.isEmpty()) {
+                pc = pcDirectory.findByMac(mac);
             }
-
-            // Broadcast to WebSocket clients
-            try {
-                messagingTemplate.convertAndSend("/topic/pc-status", statusUpdate);
-                log.debug("Broadcasted status update via WebSocket");
-            } catch (Exception e) {
-                log.error("Failed to broadcast status via WebSocket: {}", e.getMessage());
+            if (pc.isEmpty()) {
+                metrics.increment(StatusPipelineMetrics.Stage.UNRESOLVED);
+                log.warn("Computer with IP {} / MAC {} not found in any sala", ip, mac);
+                return;
             }
 
+            log.debug("Status update: PC {} (Sala {}, {}) is now {}",
+                    pc.get().getName(), pc.get().getSalaNumber(), pc.get().getIp(), status);
+            statusIngestBuffer.offer(pc.get(), parseStatus(status));
         } catch (Exception e) {
             log.error("Error processing status update: {}", e.getMessage(), e);
+            // NO relanzar la excepción para evitar bucles infinitos
         }
     }
 
-    /**
-     * DTO for PC status updates from C# agent.
-     */
-    @Data
-    public static class PcStatusUpdate {
-        @JsonProperty("PcId")
-        private Long pcId;
-
-        @JsonProperty("PcName")
-        private String pcName;
-
-        @JsonProperty("IpAddress")
-        private String ipAddress;
-
-        @JsonProperty("MacAddress")
-        private String macAddress;
-
-        @JsonProperty("Status")
-        private String status;
+    private static String text(JsonNode node, String... fieldNames) {
+        for (String fieldName : fieldNames) {
+            JsonNode value = node.get(fieldName);
+            if (value != null && !value.isNull() && !value.asText().isBlank()) {
+                return value.asText().trim();
+            }
+        }
+        return null;
+    }
 
-        @JsonProperty("Timestamp")
-        private String timestamp;
+    private static Computer.ComputerStatus parseStatus(String status) {
+        try {
+            return Computer.ComputerStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Computer.ComputerStatus.UNKNOWN;
+        }
     }
 }
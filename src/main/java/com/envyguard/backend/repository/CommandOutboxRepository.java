@@ -0,0 +1,38 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.entity.CommandOutbox;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CommandOutboxRepository extends JpaRepository<CommandOutbox, Long>, CommandOutboxRepositoryCustom {
+
+    /**
+     * Next entries to publish: highest priority first, then insertion order.
+     */
+    List<CommandOutbox> findAllByOrderByPriorityDescIdAsc(Limit limit);
+
+    /**
+     * Pending entries per priority, as [priority, count] rows.
+     */
+    @Query("SELECT o.priority, COUNT(o) FROM CommandOutbox o GROUP BY o.priority")
+    List<Object[]> countByPriority();
+
+    @Modifying
+    @Query("UPDATE CommandOutbox o SET o.attempts = o.attempts + 1, o.lastError = :lastError WHERE o.id IN :ids")
+    int recordFailedAttempt(@Param("ids") Collection<Long> ids, @Param("lastError") String lastError);
+
+    /**
+     * Drops the entries of commands that will no longer be published.
+     */
+    @Modifying
+    @Query("DELETE FROM CommandOutbox o WHERE o.commandId IN :commandIds")
+    int deleteByCommandIds(@Param("commandIds") Collection<Long> commandIds);
+}
@@ -0,0 +1,18 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.entity.CommandOutbox;
+
+import java.util.List;
+
+/**
+ * Custom JDBC operations for {@link CommandOutbox}.
+ */
+public interface CommandOutboxRepositoryCustom {
+
+    /**
+     * Inserts all outbox entries in a single JDBC batch.
+     *
+     * @param entries Outbox entries to insert
+     */
+    void insertAll(List<CommandOutbox> entries);
+}
@@ -0,0 +1,35 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.entity.CommandOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link CommandOutboxRepositoryCustom}.
+ */
+@RequiredArgsConstructor
+public class CommandOutboxRepositoryCustomImpl implements CommandOutboxRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO command_outbox (command_id, payload, priority, attempts, created_at) VALUES (?, ?, ?, 0, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<CommandOutbox> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getCommandId());
+            ps.setString(2, entry.getPayload());
+            ps.setInt(3, entry.getPriority());
+            ps.setTimestamp(4, now);
+        });
+    }
+}
@@ -2,12 +2,43 @@ package com.envyguard.backend.repository;
 
 import com.envyguard.backend.entity.Command;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface CommandRepository extends JpaRepository<Command, Long> {
-    List<Command> findByComputerName(String computerName);
-    List<Command> findByStatus(Command.CommandStatus status);
-}
\ No newline at end of file
+public interface CommandRepository extends JpaRepository<Command, Long>, JpaSpecificationExecutor<Command>,
+        CommandRepositoryCustom {
+    List<Command> findByStatusIn(Collection<Command.CommandStatus> statuses);
+
+    /**
+     * Moves the given commands from {@code currentStatus} to {@code newStatus}
+     * and stamps the send time. Rows already in another status (e.g. an agent
+     * answered first) are left untouched.
+     */
+    @Modifying
+    @Query("UPDATE Command c SET c.status = :newStatus, c.sentAt = :sentAt "
+            + "WHERE c.id IN :ids AND c.status = :currentStatus")
+    int updateStatusAndSentAt(@Param("ids") Collection<Long> ids,
+            @Param("currentStatus") Command.CommandStatus currentStatus,
+            @Param("newStatus") Command.CommandStatus newStatus,
+            @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Moves the given commands from {@code currentStatus} to {@code newStatus}
+     * with a result message.
+     */
+    @Modifying
+    @Query("UPDATE Command c SET c.status = :newStatus, c.resultMessage = :resultMessage "
+            + "WHERE c.id IN :ids AND c.status = :currentStatus")
+    int updateStatusAndResultMessage(@Param("ids") Collection<Long> ids,
+            @Param("currentStatus") Command.CommandStatus currentStatus,
+            @Param("newStatus") Command.CommandStatus newStatus,
+            @Param("resultMessage") String resultMessage);
+}
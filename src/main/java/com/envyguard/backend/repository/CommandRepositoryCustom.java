@@ -0,0 +1,43 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.dto.CommandResponse;
+import com.envyguard.backend.entity.Command;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom JDBC operations for {@link Command} that Spring Data JPA cannot batch
+ * (the IDENTITY id strategy disables Hibernate insert batching).
+ */
+public interface CommandRepositoryCustom {
+
+    /**
+     * Inserts all commands in a single JDBC batch and assigns the generated IDs
+     * back to each command.
+     *
+     * @param commands Commands to insert (IDs must be null)
+     * @return The same commands with their IDs populated
+     */
+    List<Command> insertAll(List<Command> commands);
+
+    /**
+     * Writes the status, result message and execution time reported by the
+     * agents in a single JDBC batch.
+     *
+     * @param responses Agent responses (commandId and status must be set)
+     * @return Number of rows updated for each response
+     */
+    int[] updateResults(List<CommandResponse> responses);
+
+    /**
+     * Moves the given commands to TIMED_OUT with a single UPDATE statement
+     * (the IDs are bound as one array parameter, so the list size is not limited
+     * by the driver's bind parameter count). Only PENDING or SENT rows change.
+     *
+     * @param ids           Command IDs
+     * @param resultMessage Message stored in result_message
+     * @return Number of rows updated
+     */
+    int markTimedOut(Collection<Long> ids, String resultMessage);
+}
@@ -0,0 +1,134 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.dto.CommandResponse;
+import com.envyguard.backend.entity.Command;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC implementation of {@link CommandRepositoryCustom}.
+ */
+@RequiredArgsConstructor
+public class CommandRepositoryCustomImpl implements CommandRepositoryCustom {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO commands (sala_number, pc_id, computer_name, target_ip, mac_address, action,
+                                  parameters, status, created_at, user_email, batch_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String UPDATE_RESULT_SQL =
+            "UPDATE commands SET status = ?, result_message = ?, executed_at = ? WHERE id = ?";
+
+    private static final String TIMED_OUT_SQL = """
+            UPDATE commands SET status = 'TIMED_OUT', result_message = ?, executed_at = ?
+            WHERE id = ANY (?) AND status IN ('PENDING', 'SENT')
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Command> insertAll(List<Command> commands) {
+        if (commands.isEmpty()) {
+            return commands;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_SQL, new String[] { "id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Command command = commands.get(i);
+                        if (command.getCreatedAt() == null) {
+                            command.setCreatedAt(now);
+                        }
+                        ps.setInt(1, command.getSalaNumber());
+                        ps.setLong(2, command.getPcId());
+                        ps.setString(3, command.getComputerName());
+                        ps.setString(4, command.getTargetIp());
+                        ps.setString(5, command.getMacAddress());
+                        ps.setString(6, command.getAction());
+                        ps.setString(7, command.getParameters());
+                        ps.setString(8, command.getStatus().name());
+                        ps.setTimestamp(9, Timestamp.valueOf(command.getCreatedAt()));
+                        ps.setString(10, command.getUserEmail());
+                        ps.setString(11, command.getBatchId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return commands.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < commands.size(); i++) {
+            commands.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+        return commands;
+    }
+
+    @Override
+    public int[] updateResults(List<CommandResponse> responses) {
+        if (responses.isEmpty()) {
+            return new int[0];
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.batchUpdate(UPDATE_RESULT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CommandResponse response = responses.get(i);
+                boolean finished = response.getStatus() == Command.CommandStatus.EXECUTED
+                        || response.getStatus() == Command.CommandStatus.FAILED;
+                LocalDateTime executedAt = response.getExecutedAt() != null ? response.getExecutedAt() : now;
+                ps.setString(1, response.getStatus().name());
+                ps.setString(2, truncate(response.getResultMessage()));
+                ps.setTimestamp(3, finished ? Timestamp.valueOf(executedAt) : null);
+                ps.setLong(4, response.getCommandId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return responses.size();
+            }
+        });
+    }
+
+    @Override
+    public int markTimedOut(Collection<Long> ids, String resultMessage) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(TIMED_OUT_SQL);
+            ps.setString(1, truncate(resultMessage));
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setArray(3, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        });
+    }
+
+    private String truncate(String resultMessage) {
+        // result_message es VARCHAR(500)
+        if (resultMessage == null || resultMessage.length() <= 500) {
+            return resultMessage;
+        }
+        return resultMessage.substring(0, 500);
+    }
+}
@@ -0,0 +1,78 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.dto.CommandFilter;
+import com.envyguard.backend.entity.Command;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JPA specifications for querying the command history.
+ */
+public final class CommandSpecifications {
+
+    private CommandSpecifications() {
+    }
+
+    /**
+     * Builds the WHERE clause for one page of the history, newest first: every
+     * non-null filter plus the keyset condition {@code id < cursor}.
+     *
+     * @param filter Filters (null fields are ignored)
+     * @param cursor Last ID of the previous page, or null for the first page
+     * @return Specification combining all conditions
+     */
+    public static Specification<Command> matching(CommandFilter filter, Long cursor) {
+        return where(filter, cursor, false);
+    }
+
+    /**
+     * Same as {@link #matching(CommandFilter, Long)} for ascending traversal:
+     * the keyset condition is {@code id > cursor}.
+     *
+     * @param filter Filters (null fields are ignored)
+     * @param cursor Last ID of the previous chunk, or null for the first chunk
+     * @return Specification combining all conditions
+     */
+    public static Specification<Command> matchingAfter(CommandFilter filter, Long cursor) {
+        return where(filter, cursor, true);
+    }
+
+    private static Specification<Command> where(CommandFilter filter, Long cursor, boolean ascending) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (cursor != null) {
+                predicates.add(ascending
+                        ? cb.greaterThan(root.get("id"), cursor)
+                        : cb.lessThan(root.get("id"), cursor));
+            }
+            if (filter.getSalaNumber() != null) {
+                predicates.add(cb.equal(root.get("salaNumber"), filter.getSalaNumber()));
+            }
+            if (filter.getPcId() != null) {
+                predicates.add(cb.equal(root.get("pcId"), filter.getPcId()));
+            }
+            if (filter.getComputerName() != null) {
+                predicates.add(cb.equal(root.get("computerName"), filter.getComputerName()));
+            }
+            if (filter.getAction() != null) {
+                predicates.add(cb.equal(root.get("action"), filter.getAction()));
+            }
+            if (filter.getStatus() != null) {
+                predicates.add(cb.equal(root.get("status"), filter.getStatus()));
+            }
+            if (filter.getUserEmail() != null) {
+                predicates.add(cb.equal(root.get("userEmail"), filter.getUserEmail()));
+            }
+            if (filter.getFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.getFrom()));
+            }
+            if (filter.getTo() != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), filter.getTo()));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
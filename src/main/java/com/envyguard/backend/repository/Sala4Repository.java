@@ -20,7 +20,5 @@ public interface Sala4Repository extends JpaRepository<Sala4, Long> {
      */
     Optional<Sala4> findById(Long id);
 
-    Optional<Sala4> findByIp(String ip);
-
     long countByStatus(com.envyguard.backend.entity.Computer.ComputerStatus status);
 }
@@ -0,0 +1,88 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.entity.Computer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to the status columns (status, last_seen) of the four sala
+ * tables. Used by the PC state store to restore persisted statuses at
+ * startup, write status transitions immediately and flush coalesced
+ * last_seen updates in batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SalaStatusRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Reads the persisted status of every PC of a sala that has one.
+     *
+     * @param salaNumber Sala number
+     * @return Persisted statuses (PCs without status are skipped)
+     */
+    public List<PersistedStatus> findStatuses(int salaNumber) {
+        return jdbcTemplate.query(
+                "SELECT id, status, last_seen FROM " + table(salaNumber) + " WHERE status IS NOT NULL",
+                (rs, rowNum) -> {
+                    Timestamp lastSeen = rs.getTimestamp("last_seen");
+                    return new PersistedStatus(rs.getLong("id"),
+                            Computer.ComputerStatus.valueOf(rs.getString("status")),
+                            lastSeen != null ? lastSeen.toLocalDateTime() : null);
+                });
+    }
+
+    /**
+     * Writes the status and last seen time of one PC.
+     *
+     * @return Number of rows updated
+     */
+    public int updateStatus(int salaNumber, Long pcId, Computer.ComputerStatus status, LocalDateTime lastSeen) {
+        return jdbcTemplate.update("UPDATE " + table(salaNumber) + " SET status = ?, last_seen = ? WHERE id = ?",
+                status.name(), Timestamp.valueOf(lastSeen), pcId);
+    }
+
+    /**
+     * Writes the last seen time of several PCs of a sala with one JDBC batch.
+     *
+     * @param salaNumber   Sala number
+     * @param lastSeenById Last seen time per PC ID
+     * @return Number of rows updated per statement
+     */
+    public int[] updateLastSeen(int salaNumber, Map<Long, LocalDateTime> lastSeenById) {
+        if (lastSeenById.isEmpty()) {
+            return new int[0];
+        }
+        List<Object[]> args = new ArrayList<>(lastSeenById.size());
+        lastSeenById.forEach((id, lastSeen) -> args.add(new Object[] { Timestamp.valueOf(lastSeen), id }));
+        return jdbcTemplate.batchUpdate("UPDATE " + table(salaNumber) + " SET last_seen = ? WHERE id = ?", args);
+    }
+
+    private String table(int salaNumber) {
+        if (salaNumber < 1 || salaNumber > 4) {
+            throw new IllegalArgumentException("Número de sala inválido: " + salaNumber);
+        }
+        return "sala_" + salaNumber;
+    }
+
+    /**
+     * Status row of one PC as stored in its sala table.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PersistedStatus {
+        private final Long pcId;
+        private final Computer.ComputerStatus status;
+        private final LocalDateTime lastSeen;
+    }
+}
@@ -0,0 +1,148 @@
+package com.envyguard.backend.repository;
+
+import com.envyguard.backend.dto.UptimeReport;
+import com.envyguard.backend.entity.Computer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC access to the PC availability history: the append-only interval log
+ * (pc_status_intervals) and the daily rollups (pc_uptime_daily) that the
+ * uptime reports read.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UptimeRepository {
+
+    /**
+     * Grouping of the uptime reports.
+     */
+    public enum GroupBy {
+        PC("sala_number, pc_id"),
+        SALA("sala_number"),
+        DAY("day");
+
+        private final String columns;
+
+        GroupBy(String columns) {
+            this.columns = columns;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Appends closed status runs to the interval log with one JDBC batch.
+     */
+    public void insertIntervals(List<StatusInterval> intervals) {
+        if (intervals.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO pc_status_intervals (sala_number, pc_id, status, started_at, ended_at) VALUES (?, ?, ?, ?, ?)",
+                intervals, intervals.size(), (ps, interval) -> {
+                    ps.setInt(1, interval.getSalaNumber());
+                    ps.setLong(2, interval.getPcId());
+                    ps.setString(3, interval.getStatus().name());
+                    ps.setTimestamp(4, Timestamp.valueOf(interval.getStartedAt()));
+                    ps.setTimestamp(5, Timestamp.valueOf(interval.getEndedAt()));
+                });
+    }
+
+    /**
+     * Adds seconds to the daily rollups with one JDBC batch of upserts.
+     */
+    public void addDailySeconds(List<DailySeconds> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO pc_uptime_daily (day, sala_number, pc_id, online_seconds, tracked_seconds) VALUES (?, ?, ?, ?, ?) "
+                        + "ON CONFLICT (day, sala_number, pc_id) DO UPDATE SET "
+                        + "online_seconds = pc_uptime_daily.online_seconds + EXCLUDED.online_seconds, "
+                        + "tracked_seconds = pc_uptime_daily.tracked_seconds + EXCLUDED.tracked_seconds",
+                increments, increments.size(), (ps, increment) -> {
+                    ps.setDate(1, Date.valueOf(increment.getDay()));
+                    ps.setInt(2, increment.getSalaNumber());
+                    ps.setLong(3, increment.getPcId());
+                    ps.setLong(4, increment.getOnlineSeconds());
+                    ps.setLong(5, increment.getTrackedSeconds());
+                });
+    }
+
+    /**
+     * Sums the daily rollups of a day range.
+     *
+     * @param from       First day (inclusive)
+     * @param to         Last day (inclusive)
+     * @param salaNumber Optional sala filter
+     * @param pcId       Optional PC filter (within the sala)
+     * @param groupBy    Grouping of the result
+     * @return One report per group, ordered by the grouping columns
+     */
+    public List<UptimeReport> summarize(LocalDate from, LocalDate to, Integer salaNumber, Long pcId, GroupBy groupBy) {
+        String columns = groupBy.columns;
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                .append(", SUM(online_seconds) AS online_seconds, SUM(tracked_seconds) AS tracked_seconds")
+                .append(" FROM pc_uptime_daily WHERE day BETWEEN ? AND ?");
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        if (salaNumber != null) {
+            sql.append(" AND sala_number = ?");
+            args.add(salaNumber);
+        }
+        if (pcId != null) {
+            sql.append(" AND pc_id = ?");
+            args.add(pcId);
+        }
+        sql.append(" GROUP BY ").append(columns).append(" ORDER BY ").append(columns);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            long online = rs.getLong("online_seconds");
+            long tracked = rs.getLong("tracked_seconds");
+            return UptimeReport.builder()
+                    .sala(groupBy != GroupBy.DAY ? rs.getInt("sala_number") : null)
+                    .pcId(groupBy == GroupBy.PC ? rs.getLong("pc_id") : null)
+                    .day(groupBy == GroupBy.DAY ? rs.getDate("day").toLocalDate() : null)
+                    .onlineSeconds(online)
+                    .trackedSeconds(tracked)
+                    .uptimePercent(tracked > 0 ? Math.round(online * 10000.0 / tracked) / 100.0 : 0)
+                    .build();
+        }, args.toArray());
+    }
+
+    /**
+     * Closed run of one status of a PC.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StatusInterval {
+        private final int salaNumber;
+        private final Long pcId;
+        private final Computer.ComputerStatus status;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime endedAt;
+    }
+
+    /**
+     * Seconds to add to the rollup of one PC and day.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class DailySeconds {
+        private final LocalDate day;
+        private final int salaNumber;
+        private final Long pcId;
+        private final long onlineSeconds;
+        private final long trackedSeconds;
+    }
+}
@@ -0,0 +1,109 @@
+package com.envyguard.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Coalescing stage in front of {@link SimpMessagingTemplate} for bursty
+ * WebSocket topics.
+ *
+ * Changes submitted for a destination are accumulated per key (e.g. per PC)
+ * during {@code websocket.coalesce.window-ms}; a later change for the same key
+ * is merged into the pending one. Each window emits at most one frame per
+ * destination, a JSON array with the pending changes in arrival order, and no
+ * destination gets more than {@code websocket.coalesce.max-frames-per-second}
+ * frames: a room booting 30 PCs at once produces one frame instead of 30.
+ */
+@Component
+@Slf4j
+public class BroadcastCoalescer {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StatusPipelineMetrics metrics;
+    private final long minFrameIntervalMs;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    public BroadcastCoalescer(SimpMessagingTemplate messagingTemplate, StatusPipelineMetrics metrics,
+                              @Value("${websocket.coalesce.max-frames-per-second:5}") int maxFramesPerSecond) {
+        if (maxFramesPerSecond <= 0) {
+            throw new IllegalArgumentException("websocket.coalesce.max-frames-per-second must be positive");
+        }
+        this.messagingTemplate = messagingTemplate;
+        this.metrics = metrics;
+        this.minFrameIntervalMs = 1000L / maxFramesPerSecond;
+    }
+
+    /**
+     * Queues a change for the next frame of a destination.
+     *
+     * @param destination STOMP destination
+     * @param key         Key of the changed item; changes with the same key
+     *                    within a window are merged
+     * @param change      Change to send
+     * @param merge       Merges a pending change (first argument) with a newer
+     *                    one (second argument)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void submit(String destination, Object key, T change, BinaryOperator<T> merge) {
+        Pending frame = pending.computeIfAbsent(destination, Pending::new);
+        synchronized (frame) {
+            Object previous = frame.changes.putIfAbsent(key, change);
+            if (previous != null) {
+                frame.changes.put(key, merge.apply((T) previous, change));
+                metrics.increment(StatusPipelineMetrics.Stage.COALESCED);
+            }
+        }
+    }
+
+    /**
+     * Sends one frame per destination with the changes accumulated since its
+     * previous frame, unless that frame was sent less than the minimum frame
+     * interval ago.
+     */
+    @Scheduled(fixedDelayString = "${websocket.coalesce.window-ms:200}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Pending frame : pending.values()) {
+            List<Object> changes;
+            synchronized (frame) {
+                if (frame.changes.isEmpty() || now - frame.lastFrameAt < minFrameIntervalMs) {
+                    continue;
+                }
+                changes = new ArrayList<>(frame.changes.values());
+                frame.changes.clear();
+                frame.lastFrameAt = now;
+            }
+
+            try {
+                messagingTemplate.convertAndSend(frame.destination, changes);
+                metrics.increment(StatusPipelineMetrics.Stage.BROADCAST);
+            } catch (Exception e) {
+                log.error("Failed to broadcast {} changes to {}: {}", changes.size(), frame.destination, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Changes waiting for the next frame of one destination.
+     */
+    private static final class Pending {
+        private final String destination;
+        private final Map<Object, Object> changes = new LinkedHashMap<>();
+        private long lastFrameAt;
+
+        private Pending(String destination) {
+            this.destination = destination;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.envyguard.backend.service;
+
+import lombok.Getter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived slots used to collapse duplicate command requests.
+ *
+ * The first request for a key becomes the owner of the slot and creates the
+ * command; requests for the same key that arrive while the slot is alive wait
+ * for the owner's command ID instead of creating another command. Slots are
+ * claimed atomically, so two concurrent double-clicks cannot both become
+ * owners. A slot can carry a fingerprint of the request that claimed it, so
+ * a key reused for a different request can be told apart.
+ */
+@Component
+public class CommandCoalescer {
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Claims the slot for a key, or joins the live slot another request owns.
+     *
+     * @param key   Coalescing key
+     * @param ttlMs How long the slot stays alive once claimed
+     * @return The slot; {@link Slot#isOwner()} tells whether the caller must
+     *         create the command and {@link #complete}/{@link #fail} it
+     */
+    public Slot claim(String key, long ttlMs) {
+        return claim(key, null, ttlMs);
+    }
+
+    /**
+     * Claims the slot for a key, recording the fingerprint of the request, or
+     * joins the live slot another request owns.
+     *
+     * @param key         Coalescing key
+     * @param fingerprint Fingerprint of the request (may be null)
+     * @param ttlMs       How long the slot stays alive once claimed
+     * @return The slot; see {@link Slot#matches(String)} for joined slots
+     */
+    public Slot claim(String key, String fingerprint, long ttlMs) {
+        long now = System.currentTimeMillis();
+        Slot fresh = new Slot(key, fingerprint, now + ttlMs, true);
+        Slot current = slots.compute(key, (k, existing) ->
+                existing == null || existing.isExpired(now) ? fresh : existing);
+        return current == fresh ? fresh : current.joined();
+    }
+
+    /**
+     * Publishes the command created by the owner of a slot.
+     */
+    public void complete(Slot slot, Long commandId) {
+        slot.commandId.complete(commandId);
+    }
+
+    /**
+     * Releases a slot whose owner failed (or whose command can no longer be
+     * reused) so the next request creates a new command.
+     */
+    public void fail(Slot slot, Throwable cause) {
+        slots.remove(slot.key, slot.origin());
+        slot.commandId.completeExceptionally(cause);
+    }
+
+    /**
+     * Releases a completed slot without failing its waiters.
+     */
+    public void release(Slot slot) {
+        slots.remove(slot.key, slot.origin());
+    }
+
+    /**
+     * @return Number of live slots
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    @Scheduled(fixedDelayString = "${commands.coalesce.cleanup-ms:30000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        slots.values().removeIf(slot -> slot.isExpired(now));
+    }
+
+    /**
+     * A claimed coalescing slot. Joined views share the owner's future.
+     */
+    public static final class Slot {
+
+        private final String key;
+        private final String fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<Long> commandId;
+        private final Slot origin;
+        @Getter
+        private final boolean owner;
+
+        private Slot(String key, String fingerprint, long expiresAt, boolean owner) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+            this.commandId = new CompletableFuture<>();
+            this.origin = null;
+            this.owner = owner;
+        }
+
+        private Slot(Slot origin) {
+            this.key = origin.key;
+            this.fingerprint = origin.fingerprint;
+            this.expiresAt = origin.expiresAt;
+            this.commandId = origin.commandId;
+            this.origin = origin;
+            this.owner = false;
+        }
+
+        /**
+         * @return Future completed with the ID of the owner's command
+         */
+        public CompletableFuture<Long> getCommandId() {
+            return commandId;
+        }
+
+        /**
+         * @param fingerprint Fingerprint of a request joining the slot
+         * @return Whether it is the same request that claimed the slot
+         */
+        public boolean matches(String fingerprint) {
+            return Objects.equals(this.fingerprint, fingerprint);
+        }
+
+        private Slot joined() {
+            return new Slot(this);
+        }
+
+        private Slot origin() {
+            return origin != null ? origin : this;
+        }
+
+        // Un slot cuyo comando aún se está creando no expira
+        private boolean isExpired(long now) {
+            return now >= expiresAt && commandId.isDone();
+        }
+    }
+}
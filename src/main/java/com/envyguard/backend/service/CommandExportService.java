@@ -0,0 +1,207 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.dto.CommandFilter;
+import com.envyguard.backend.entity.Command;
+import com.envyguard.backend.repository.CommandRepository;
+import com.envyguard.backend.repository.CommandSpecifications;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the command audit log as NDJSON or CSV.
+ *
+ * Rows are read in ascending ID order in fixed-size keyset chunks
+ * ({@code commands.export.chunk-size}), each in its own short read-only
+ * transaction, and written to the response as soon as they are read. Each
+ * chunk is detached from the persistence context before it is written, so
+ * memory use is bounded by one chunk regardless of the size of the export.
+ * With open-in-view disabled the database connection is released between
+ * chunks instead of being held for the whole download.
+ */
+@Service
+@Slf4j
+public class CommandExportService {
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @param value Format name (case-insensitive)
+         * @return Matching format
+         * @throws IllegalArgumentException If the format is not supported
+         */
+        public static Format from(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Formato de exportación no soportado: " + value
+                        + ". Valores válidos: ndjson, csv");
+            }
+        }
+    }
+
+    private static final String[] CSV_COLUMNS = {
+            "id", "createdAt", "salaNumber", "pcId", "computerName", "targetIp", "macAddress", "action",
+            "parameters", "status", "sentAt", "executedAt", "resultMessage", "userEmail", "batchId"
+    };
+
+    private final CommandRepository commandRepository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${commands.export.chunk-size:1000}")
+    private int chunkSize;
+
+    public CommandExportService(CommandRepository commandRepository, ObjectMapper objectMapper,
+            EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.commandRepository = commandRepository;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Writes every command matching the filter to the output stream.
+     *
+     * @param filter Filters (null fields are ignored)
+     * @param format Output format
+     * @param gzip   Whether to gzip the output
+     * @param out    Response output stream (not closed)
+     * @return Number of commands written
+     * @throws IOException If writing to the client fails
+     */
+    public long export(CommandFilter filter, Format format, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 8192) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOut : out, StandardCharsets.UTF_8));
+
+        long written = 0;
+        if (format == Format.NDJSON) {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            written = writeChunks(filter, chunk -> {
+                for (Command command : chunk) {
+                    generator.writeObject(command);
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            });
+            generator.close();
+        } else {
+            writer.write(String.join(",", CSV_COLUMNS));
+            writer.write("\r\n");
+            written = writeChunks(filter, chunk -> {
+                for (Command command : chunk) {
+                    writeCsvRow(writer, command);
+                }
+                writer.flush();
+            });
+        }
+
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        out.flush();
+        log.info("Exportados {} comandos en formato {}{}", written, format, gzip ? " (gzip)" : "");
+        return written;
+    }
+
+    private long writeChunks(CommandFilter filter, ChunkWriter chunkWriter) throws IOException {
+        Sort byId = Sort.by(Sort.Direction.ASC, "id");
+        Long cursor = null;
+        long written = 0;
+        while (true) {
+            Long after = cursor;
+            List<Command> chunk = readOnlyTransaction.execute(status -> {
+                List<Command> rows = commandRepository.findBy(CommandSpecifications.matchingAfter(filter, after),
+                        query -> query.sortBy(byId).limit(chunkSize).all());
+                // Desacoplar el lote: el contexto de persistencia no crece con la exportación
+                entityManager.clear();
+                return rows;
+            });
+            if (chunk.isEmpty()) {
+                return written;
+            }
+            chunkWriter.write(chunk);
+            written += chunk.size();
+            if (chunk.size() < chunkSize) {
+                return written;
+            }
+            cursor = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    private void writeCsvRow(Writer writer, Command command) throws IOException {
+        Object[] values = {
+                command.getId(), command.getCreatedAt(), command.getSalaNumber(), command.getPcId(),
+                command.getComputerName(), command.getTargetIp(), command.getMacAddress(), command.getAction(),
+                command.getParameters(), command.getStatus(), command.getSentAt(), command.getExecutedAt(),
+                command.getResultMessage(), command.getUserEmail(), command.getBatchId()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvValue(writer, values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCsvValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void write(List<Command> chunk) throws IOException;
+    }
+}
@@ -0,0 +1,177 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Command;
+import com.envyguard.backend.entity.CommandOutbox;
+import com.envyguard.backend.repository.CommandOutboxRepository;
+import com.envyguard.backend.repository.CommandRepository;
+import com.envyguard.backend.util.ActionMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Background relay that drains the command outbox into RabbitMQ.
+ *
+ * Reads outbox rows by priority (urgent lane first) and then insertion order,
+ * publishes them as one batch with publisher confirms and, once confirmed,
+ * deletes the rows and flips the commands from PENDING to SENT in a single
+ * short transaction. The database
+ * connection is never held while waiting for the broker. The issue time and
+ * deadline of each message are stamped at publish time, and the timeout of
+ * the command in {@link InFlightCommandRegistry} starts once the broker
+ * confirms it. If publishing fails
+ * the rows stay in the outbox and are retried with exponential backoff; after
+ * {@code commands.outbox.max-attempts} the commands are marked FAILED.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "spring.rabbitmq.enabled", havingValue = "true", matchIfMissing = false)
+public class CommandOutboxRelay {
+
+    private static final long MAX_BACKOFF_MS = 30000;
+
+    private final CommandOutboxRepository commandOutboxRepository;
+    private final CommandRepository commandRepository;
+    private final RabbitMQService rabbitMQService;
+    private final InFlightCommandRegistry inFlightCommandRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${commands.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${commands.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${commands.outbox.poll-ms:200}")
+    private long pollMs;
+
+    private int consecutiveFailures;
+    private long nextAttemptAt;
+
+    public CommandOutboxRelay(CommandOutboxRepository commandOutboxRepository,
+            CommandRepository commandRepository,
+            RabbitMQService rabbitMQService,
+            InFlightCommandRegistry inFlightCommandRegistry,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper) {
+        this.commandOutboxRepository = commandOutboxRepository;
+        this.commandRepository = commandRepository;
+        this.rabbitMQService = rabbitMQService;
+        this.inFlightCommandRegistry = inFlightCommandRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Drains the outbox until it is empty or a publish fails.
+     */
+    @Scheduled(fixedDelayString = "${commands.outbox.poll-ms:200}")
+    public void relay() {
+        if (System.currentTimeMillis() < nextAttemptAt) {
+            return;
+        }
+
+        List<CommandOutbox> entries;
+        do {
+            entries = commandOutboxRepository.findAllByOrderByPriorityDescIdAsc(Limit.of(batchSize));
+            if (entries.isEmpty() || !publish(entries)) {
+                return;
+            }
+        } while (entries.size() == batchSize);
+    }
+
+    private boolean publish(List<CommandOutbox> entries) {
+        List<Long> outboxIds = entries.stream().map(CommandOutbox::getId).collect(Collectors.toList());
+        List<Long> commandIds = entries.stream().map(CommandOutbox::getCommandId).collect(Collectors.toList());
+
+        Instant sentAt = Instant.now();
+        entries.forEach(entry -> stamp(entry, sentAt));
+        try {
+            rabbitMQService.sendOutboxEntries(entries);
+        } catch (Exception e) {
+            onPublishFailure(entries, outboxIds, e);
+            return false;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            commandOutboxRepository.deleteAllByIdInBatch(outboxIds);
+            commandRepository.updateStatusAndSentAt(commandIds, Command.CommandStatus.PENDING,
+                    Command.CommandStatus.SENT, LocalDateTime.ofInstant(sentAt, ZoneId.systemDefault()));
+        });
+        commandIds.forEach(commandId -> inFlightCommandRegistry.markSent(commandId, sentAt));
+
+        consecutiveFailures = 0;
+        nextAttemptAt = 0;
+        log.info("Outbox relay published {} commands", entries.size());
+        return true;
+    }
+
+    private void onPublishFailure(List<CommandOutbox> entries, List<Long> outboxIds, Exception e) {
+        String error = truncate(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+
+        List<CommandOutbox> exhausted = entries.stream()
+                .filter(entry -> entry.getAttempts() + 1 >= maxAttempts)
+                .collect(Collectors.toList());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            commandOutboxRepository.recordFailedAttempt(outboxIds, error);
+            if (!exhausted.isEmpty()) {
+                commandRepository.updateStatusAndResultMessage(
+                        exhausted.stream().map(CommandOutbox::getCommandId).collect(Collectors.toList()),
+                        Command.CommandStatus.PENDING, Command.CommandStatus.FAILED,
+                        "Error al enviar a RabbitMQ: " + error);
+                commandOutboxRepository.deleteAllByIdInBatch(
+                        exhausted.stream().map(CommandOutbox::getId).collect(Collectors.toList()));
+            }
+        });
+        exhausted.forEach(entry -> inFlightCommandRegistry.resolve(entry.getCommandId()));
+
+        consecutiveFailures++;
+        long backoff = Math.min(MAX_BACKOFF_MS, pollMs << Math.min(consecutiveFailures, 16));
+        nextAttemptAt = System.currentTimeMillis() + backoff;
+        log.warn("Outbox relay failed to publish {} commands ({} gave up), retrying in {} ms: {}",
+                entries.size(), exhausted.size(), backoff, error);
+    }
+
+    /**
+     * Sets the issue time and deadline of the agent message to the publish
+     * time. Only the copy being sent changes; a failed publish is stamped
+     * again on retry.
+     */
+    private void stamp(CommandOutbox entry, Instant sentAt) {
+        InFlightCommandRegistry.InFlightCommand command = inFlightCommandRegistry.get(entry.getCommandId());
+        if (command == null) {
+            return;
+        }
+        try {
+            ObjectNode message = (ObjectNode) objectMapper.readTree(entry.getPayload());
+            message.put("issuedAt", sentAt.toString());
+            message.put("deadline", sentAt.plus(ActionMapper.timeoutFor(command.getAction())).toString());
+            entry.setPayload(objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            // Se envía con el sobre original
+            log.debug("Could not stamp outbox entry {}: {}", entry.getId(), e.getMessage());
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 450 ? message.substring(0, 450) : message;
+    }
+}
@@ -1,47 +1,103 @@
 package com.envyguard.backend.service;
 
+import com.envyguard.backend.config.RabbitMQConfig;
 import com.envyguard.backend.dto.AgentCommandMessage;
+import com.envyguard.backend.dto.BatchCommandRequest;
+import com.envyguard.backend.dto.BatchCommandResponse;
+import com.envyguard.backend.dto.CommandFilter;
+import com.envyguard.backend.dto.CommandPageResponse;
 import com.envyguard.backend.dto.CommandRequest;
+import com.envyguard.backend.dto.CommandResponse;
 import com.envyguard.backend.entity.*;
+import com.envyguard.backend.exception.IdempotencyKeyMismatchException;
 import com.envyguard.backend.repository.*;
 import com.envyguard.backend.util.ActionMapper;
+import com.envyguard.backend.util.CommandLane;
+import com.envyguard.backend.util.NetAddress;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing remote commands.
- * Handles command creation, database persistence, and RabbitMQ message sending.
+ * Handles command creation and database persistence. Agent messages are written
+ * to the command outbox in the same transaction and published to RabbitMQ by
+ * {@link CommandOutboxRelay}.
  */
 @Service
 @Slf4j
 public class CommandService {
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+
+    private static final int MAX_COALESCE_ATTEMPTS = 3;
+    private static final long COALESCE_WAIT_MS = 10000;
+
     private final CommandRepository commandRepository;
-    private final Sala1Repository sala1Repository;
-    private final Sala2Repository sala2Repository;
-    private final Sala3Repository sala3Repository;
-    private final Sala4Repository sala4Repository;
+    private final PcDirectory pcDirectory;
+    private final CommandOutboxRepository commandOutboxRepository;
+    private final InFlightCommandRegistry inFlightCommandRegistry;
+    private final ObjectMapper objectMapper;
+    private final CommandCoalescer commandCoalescer;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<AmqpAdmin> amqpAdmin;
+
+    @Value("${commands.coalesce.window-ms:5000}")
+    private long coalesceWindowMs;
 
-    @Autowired(required = false)
-    private RabbitMQService rabbitMQService;
+    @Value("${commands.idempotency.ttl-ms:600000}")
+    private long idempotencyTtlMs;
 
     public CommandService(CommandRepository commandRepository,
-            Sala1Repository sala1Repository,
-            Sala2Repository sala2Repository,
-            Sala3Repository sala3Repository,
-            Sala4Repository sala4Repository) {
+            PcDirectory pcDirectory,
+            CommandOutboxRepository commandOutboxRepository,
+            InFlightCommandRegistry inFlightCommandRegistry,
+            ObjectMapper objectMapper,
+            CommandCoalescer commandCoalescer,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<AmqpAdmin> amqpAdmin) {
         this.commandRepository = commandRepository;
-        this.sala1Repository = sala1Repository;
-        this.sala2Repository = sala2Repository;
-        this.sala3Repository = sala3Repository;
-        this.sala4Repository = sala4Repository;
+        this.commandOutboxRepository = commandOutboxRepository;
+        this.inFlightCommandRegistry = inFlightCommandRegistry;
+        this.objectMapper = objectMapper;
+        this.pcDirectory = pcDirectory;
+        this.commandCoalescer = commandCoalescer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.amqpAdmin = amqpAdmin;
     }
 
     /**
@@ -49,73 +105,124 @@ public class CommandService {
      * Validates that the computer exists in the specified sala before creating the
      * command.
      *
+     * Duplicate requests are coalesced: while a command for the same sala, PC,
+     * action and parameters is in flight and younger than
+     * {@code commands.coalesce.window-ms}, the existing command is returned
+     * instead of creating (and sending) a new one.
+     *
      * @param request CommandRequest with command data (salaNumber and pcId)
-     * @return Created command
+     * @return Created (or coalesced) command
      * @throws IllegalArgumentException If computer does not exist in the specified
      *                                  sala
      */
-    @Transactional
     public Command createCommand(CommandRequest request) {
+        return createCommand(request, null);
+    }
+
+    /**
+     * Creates a new command for a computer honouring an idempotency key.
+     * Requests from the same user with the same key within
+     * {@code commands.idempotency.ttl-ms} return the command created by the
+     * first one, whatever its current status; reusing the key for a different
+     * request is rejected. Without a key, duplicates are coalesced as in
+     * {@link #createCommand(CommandRequest)}.
+     *
+     * @param request        CommandRequest with command data (salaNumber and pcId)
+     * @param idempotencyKey Client-provided key (optional)
+     * @return Created (or previously created) command
+     * @throws IllegalArgumentException        If computer does not exist in the
+     *                                         specified sala
+     * @throws IdempotencyKeyMismatchException If the key was used for a
+     *                                         different request
+     */
+    public Command createCommand(CommandRequest request, String idempotencyKey) {
+        boolean idempotent = idempotencyKey != null && !idempotencyKey.isBlank();
+        String requestKey = request.getSalaNumber() + ":" + request.getPcId() + ":"
+                + (request.getAction() != null ? request.getAction().toUpperCase() : null) + ":"
+                + (request.getParameters() != null ? request.getParameters() : "");
+        String key = idempotent
+                ? "idempotency:" + currentUserEmail() + ":" + idempotencyKey.trim()
+                : "command:" + requestKey;
+        // Con Idempotency-Key el slot guarda el hash de la petición para detectar claves reutilizadas
+        String fingerprint = idempotent ? sha256(requestKey) : null;
+        long ttlMs = idempotent ? idempotencyTtlMs : coalesceWindowMs;
+
+        for (int attempt = 0; attempt < MAX_COALESCE_ATTEMPTS; attempt++) {
+            CommandCoalescer.Slot slot = commandCoalescer.claim(key, fingerprint, ttlMs);
+            if (!slot.isOwner() && !slot.matches(fingerprint)) {
+                throw new IdempotencyKeyMismatchException(
+                        "La Idempotency-Key ya se usó con una solicitud distinta");
+            }
+            if (slot.isOwner()) {
+                try {
+                    Command command = transactionTemplate.execute(status -> doCreateCommand(request));
+                    commandCoalescer.complete(slot, command.getId());
+                    return command;
+                } catch (RuntimeException e) {
+                    commandCoalescer.fail(slot, e);
+                    throw e;
+                }
+            }
+
+            Optional<Command> existing = awaitCoalesced(slot, idempotent);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        return transactionTemplate.execute(status -> doCreateCommand(request));
+    }
+
+    /**
+     * Waits for the command of the request that owns a coalescing slot.
+     *
+     * @return The existing command, or empty if it cannot be reused (the owner
+     *         failed or, without idempotency key, the command is no longer in flight)
+     */
+    private Optional<Command> awaitCoalesced(CommandCoalescer.Slot slot, boolean idempotent) {
+        Long commandId;
+        try {
+            commandId = slot.getCommandId().get(COALESCE_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return Optional.empty();
+        } catch (TimeoutException e) {
+            throw new IllegalArgumentException("Ya hay una solicitud idéntica en proceso, intente de nuevo");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando una solicitud idéntica", e);
+        }
+
+        if (!idempotent && inFlightCommandRegistry.get(commandId) == null) {
+            // El comando anterior ya terminó: se crea uno nuevo
+            commandCoalescer.release(slot);
+            return Optional.empty();
+        }
+        log.info("Solicitud duplicada: se devuelve el comando existente {}", commandId);
+        return commandRepository.findById(commandId);
+    }
+
+    private Command doCreateCommand(CommandRequest request) {
         // Validar que salaNumber esté entre 1 y 4
         Integer salaNumber = request.getSalaNumber();
         if (salaNumber < 1 || salaNumber > 4) {
             throw new IllegalArgumentException("Número de sala inválido: " + salaNumber + ". Debe estar entre 1 y 4.");
         }
 
-        // Buscar el PC en la sala correspondiente
-        String computerName = null;
-        String targetIp = null;
-        String macAddress = null;
-
-        switch (salaNumber) {
-            case 1:
-                Sala1 pc1 = sala1Repository.findById(request.getPcId())
-                        .orElseThrow(() -> new IllegalArgumentException(
-                                "PC no encontrado en Sala 1 con ID: " + request.getPcId()));
-                computerName = pc1.getNombrePc();
-                targetIp = pc1.getIp();
-                macAddress = pc1.getMac();
-                break;
-            case 2:
-                Sala2 pc2 = sala2Repository.findById(request.getPcId())
-                        .orElseThrow(() -> new IllegalArgumentException(
-                                "PC no encontrado en Sala 2 con ID: " + request.getPcId()));
-                computerName = pc2.getNombrePc();
-                targetIp = pc2.getIp();
-                macAddress = pc2.getMac();
-                break;
-            case 3:
-                Sala3 pc3 = sala3Repository.findById(request.getPcId())
-                        .orElseThrow(() -> new IllegalArgumentException(
-                                "PC no encontrado en Sala 3 con ID: " + request.getPcId()));
-                computerName = pc3.getNombrePc();
-                targetIp = pc3.getIp();
-                macAddress = pc3.getMac();
-                break;
-            case 4:
-                Sala4 pc4 = sala4Repository.findById(request.getPcId())
-                        .orElseThrow(() -> new IllegalArgumentException(
-                                "PC no encontrado en Sala 4 con ID: " + request.getPcId()));
-                computerName = pc4.getNombrePc();
-                targetIp = pc4.getIp();
-                macAddress = pc4.getMac();
-                break;
-        }
+        // Buscar el PC en el directorio en memoria (sin consultar la base de datos)
+        PcDirectory.Pc pc = pcDirectory.find(salaNumber, request.getPcId())
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "PC no encontrado en Sala " + salaNumber + " con ID: " + request.getPcId()));
+        String computerName = pc.getName();
 
         // Obtener el email del usuario autenticado
-        String userEmail = null;
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            userEmail = authentication.getName();
-        }
+        String userEmail = currentUserEmail();
 
         // Crear el comando con toda la información
         Command command = Command.builder()
                 .salaNumber(salaNumber)
                 .pcId(request.getPcId())
                 .computerName(computerName)
-                .targetIp(targetIp)
-                .macAddress(macAddress)
+                .targetIp(pc.getIp())
+                .macAddress(pc.getMac())
                 .action(request.getAction())
                 .parameters(request.getParameters())
                 .status(Command.CommandStatus.PENDING)
@@ -124,88 +231,125 @@ public class CommandService {
 
         command = commandRepository.save(command);
 
-        // Intentar enviar a RabbitMQ si el servicio está disponible
-        if (rabbitMQService != null) {
-            try {
-                // Convertir acción del backend al formato del agente
-                String agentAction = ActionMapper.toAgentAction(command.getAction());
-
-                // Construir mensaje en formato esperado por el agente C#
-                AgentCommandMessage agentMessage;
-
-                if ("wakeup".equals(agentAction)) {
-                    // Wake-on-LAN: targetIp vacío, incluir macAddress
-                    agentMessage = AgentCommandMessage.builder()
-                            .action(agentAction)
-                            .targetIp("")
-                            .macAddress(command.getMacAddress())
-                            .parameters(command.getParameters() != null ? command.getParameters() : "")
-                            .build();
-                    log.debug("Mensaje Wake-on-LAN: action={}, macAddress={}", agentAction, command.getMacAddress());
-                } else {
-                    // Acciones normales: incluir targetIp, sin macAddress (será null y se excluirá
-                    // del JSON)
-                    agentMessage = AgentCommandMessage.builder()
-                            .action(agentAction)
-                            .targetIp(command.getTargetIp())
-                            .macAddress(null) // Explícitamente null para excluir del JSON
-                            .parameters(command.getParameters() != null ? command.getParameters() : "")
-                            .build();
-                    log.debug("Mensaje normal: action={}, targetIp={}, parameters={}",
-                            agentAction, command.getTargetIp(), command.getParameters());
-                }
-
-                rabbitMQService.sendCommand(agentMessage);
-                command.setStatus(Command.CommandStatus.SENT);
-                command.setSentAt(LocalDateTime.now());
-                command = commandRepository.save(command);
-                log.info("Comando {} enviado a RabbitMQ exitosamente para {} en Sala {} (action: {})",
-                        command.getId(), computerName, salaNumber, agentAction);
-            } catch (IllegalArgumentException e) {
-                log.error("Acción inválida en comando {}: {}", command.getId(), e.getMessage());
-                command.setStatus(Command.CommandStatus.FAILED);
-                command.setResultMessage("Acción no válida: " + e.getMessage());
-                command = commandRepository.save(command);
-            } catch (Exception e) {
-                log.error("Error al enviar comando {} a RabbitMQ: {}", command.getId(), e.getMessage());
-                command.setStatus(Command.CommandStatus.FAILED);
-                command.setResultMessage("Error al enviar a RabbitMQ: " + e.getMessage());
-                command = commandRepository.save(command);
-            }
-        } else {
-            log.warn("Servicio RabbitMQ no disponible. Comando {} guardado pero no enviado.", command.getId());
+        // Encolar el mensaje en el outbox dentro de la misma transacción.
+        // CommandOutboxRelay lo publica en RabbitMQ y cambia el estado a SENT.
+        try {
+            AgentCommandMessage agentMessage = buildAgentMessage(command, Instant.now());
+            commandOutboxRepository.save(toOutbox(command, agentMessage));
+            registerInFlight(List.of(toInFlight(command, agentMessage)));
+            log.info("Comando {} encolado para {} en Sala {} (action: {})",
+                    command.getId(), computerName, salaNumber, agentMessage.getAction());
+        } catch (IllegalArgumentException e) {
+            log.error("Acción inválida en comando {}: {}", command.getId(), e.getMessage());
+            command.setStatus(Command.CommandStatus.FAILED);
+            command.setResultMessage("Acción no válida: " + e.getMessage());
+            command = commandRepository.save(command);
         }
 
         return command;
     }
 
     /**
-     * Gets all commands.
+     * Creates the same command for several PCs of a sala in one operation.
+     * Targets are resolved with a single query and all command and outbox rows
+     * are inserted in JDBC batches; the relay publishes the messages afterwards.
      *
-     * @return List of all commands
+     * @param request BatchCommandRequest with the sala, the target PCs (or all) and
+     *                the action
+     * @return Batch ID and the command created for each PC
+     * @throws IllegalArgumentException If the action is invalid, no target is
+     *                                  given or some PC does not exist in the sala
      */
-    public List<Command> getAllCommands() {
-        return commandRepository.findAll();
-    }
+    @Transactional
+    public BatchCommandResponse createBatch(BatchCommandRequest request) {
+        Integer salaNumber = request.getSalaNumber();
+        if (salaNumber == null || salaNumber < 1 || salaNumber > 4) {
+            throw new IllegalArgumentException("Número de sala inválido: " + salaNumber + ". Debe estar entre 1 y 4.");
+        }
+        // Validar la acción antes de insertar (lanza IllegalArgumentException con las acciones válidas)
+        ActionMapper.toAgentAction(request.getAction());
+        if (!request.isAll() && request.getSubnet() == null
+                && (request.getPcIds() == null || request.getPcIds().isEmpty())) {
+            throw new IllegalArgumentException("Debe indicar pcIds, subnet o all=true");
+        }
 
-    /**
-     * Gets all commands for a specific computer.
-     *
-     * @param computerName Computer name
-     * @return List of commands
-     */
-    public List<Command> getCommandsByComputer(String computerName) {
-        return commandRepository.findByComputerName(computerName);
+        String batchId = UUID.randomUUID().toString();
+        String userEmail = currentUserEmail();
+
+        List<Command> commands = resolveBatchTargets(request);
+        for (Command command : commands) {
+            command.setAction(request.getAction());
+            command.setParameters(request.getParameters());
+            command.setStatus(Command.CommandStatus.PENDING);
+            command.setUserEmail(userEmail);
+            command.setBatchId(batchId);
+        }
+
+        commandRepository.insertAll(commands);
+        log.info("Lote {}: {} comandos {} creados para Sala {}", batchId, commands.size(), request.getAction(),
+                salaNumber);
+
+        Instant issuedAt = Instant.now();
+        List<CommandOutbox> outbox = new ArrayList<>(commands.size());
+        List<InFlightCommandRegistry.InFlightCommand> issued = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            AgentCommandMessage agentMessage = buildAgentMessage(command, issuedAt);
+            outbox.add(toOutbox(command, agentMessage));
+            issued.add(toInFlight(command, agentMessage));
+        }
+        commandOutboxRepository.insertAll(outbox);
+        registerInFlight(issued);
+
+        return BatchCommandResponse.builder()
+                .batchId(batchId)
+                .salaNumber(salaNumber)
+                .action(request.getAction())
+                .commands(commands.stream()
+                        .map(command -> BatchCommandResponse.Item.builder()
+                                .pcId(command.getPcId())
+                                .commandId(command.getId())
+                                .computerName(command.getComputerName())
+                                .status(command.getStatus())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
     }
 
     /**
-     * Gets all commands with a specific status.
+     * Gets one page of the command history, newest first, using keyset
+     * pagination on the command ID: each page is an index range scan that
+     * starts after the cursor, so deep pages cost the same as the first one.
      *
-     * @param status Command status
-     * @return List of commands
+     * @param filter Optional filters (sala, PC, action, status, user, time range)
+     * @param cursor {@code nextCursor} of the previous page, or null for the first page
+     * @param size   Page size (defaults to {@value #DEFAULT_PAGE_SIZE}, capped at {@value #MAX_PAGE_SIZE})
+     * @return Commands of the page and the cursor of the next one
+     * @throws IllegalArgumentException If the size is not positive
      */
-    public List<Command> getCommandsByStatus(Command.CommandStatus status) {
-        return commandRepository.findByStatus(status);
+    @Transactional(readOnly = true)
+    public CommandPageResponse searchCommands(CommandFilter filter, Long cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("El tamaño de página debe ser mayor que 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        // Se pide un elemento extra para saber si hay una página siguiente
+        int limit = pageSize + 1;
+        List<Command> items = commandRepository.findBy(CommandSpecifications.matching(filter, cursor),
+                query -> query.sortBy(Sort.by(Sort.Direction.DESC, "id")).limit(limit).all());
+
+        Long nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = items.get(pageSize - 1).getId();
+        }
+
+        return CommandPageResponse.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .size(pageSize)
+                .build();
     }
 
     /**
@@ -235,10 +379,273 @@ public class CommandService {
         command.setStatus(status);
         command.setResultMessage(resultMessage);
 
-        if (status == Command.CommandStatus.EXECUTED || status == Command.CommandStatus.FAILED) {
+        if (isFinal(status)) {
             command.setExecutedAt(LocalDateTime.now());
+            inFlightCommandRegistry.resolve(commandId);
         }
 
         return commandRepository.save(command);
     }
+
+    /**
+     * Applies agent responses correlated by command ID.
+     * Each response is resolved against the in-flight index (no database lookup)
+     * and all accepted results are written with one batched UPDATE. Responses
+     * for commands that are not in flight (unknown, duplicated or already
+     * finished) are ignored.
+     *
+     * @param responses Responses received from the agents
+     * @return Number of responses applied
+     */
+    @Transactional
+    public int applyResponses(List<CommandResponse> responses) {
+        List<CommandResponse> accepted = new ArrayList<>(responses.size());
+        List<InFlightCommandRegistry.InFlightCommand> resolved = new ArrayList<>();
+
+        for (CommandResponse response : responses) {
+            if (response.getCommandId() == null || response.getStatus() == null) {
+                continue;
+            }
+            InFlightCommandRegistry.InFlightCommand entry = isFinal(response.getStatus())
+                    ? inFlightCommandRegistry.resolve(response.getCommandId())
+                    : inFlightCommandRegistry.get(response.getCommandId());
+            if (entry == null) {
+                log.warn("Respuesta para el comando {} que no está en curso - ignorada", response.getCommandId());
+                continue;
+            }
+            if (isFinal(response.getStatus())) {
+                resolved.add(entry);
+            }
+            accepted.add(response);
+        }
+
+        try {
+            commandRepository.updateResults(accepted);
+        } catch (RuntimeException e) {
+            // Volver a registrar para que un reintento pueda correlacionarlos
+            resolved.forEach(inFlightCommandRegistry::register);
+            throw e;
+        }
+        return accepted.size();
+    }
+
+    /**
+     * @return In-flight command counts (total and per sala)
+     */
+    public Map<String, Object> getInFlightSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total", inFlightCommandRegistry.count());
+        summary.put("bySala", inFlightCommandRegistry.countsBySala());
+        return summary;
+    }
+
+    /**
+     * Queue depth per dispatch lane: commands waiting in the outbox and
+     * commands sent but not answered yet, plus the depth of the pc_commands
+     * queue on the broker (shared by all lanes) when RabbitMQ is enabled.
+     *
+     * @return Lane metrics
+     */
+    public Map<String, Object> getLaneSummary() {
+        Map<CommandLane, Long> outboxByLane = new EnumMap<>(CommandLane.class);
+        for (Object[] row : commandOutboxRepository.countByPriority()) {
+            outboxByLane.merge(CommandLane.fromPriority(((Number) row[0]).intValue()),
+                    ((Number) row[1]).longValue(), Long::sum);
+        }
+        Map<CommandLane, Integer> inFlightByLane = inFlightCommandRegistry.countsByLane();
+
+        Map<String, Object> lanes = new LinkedHashMap<>();
+        for (CommandLane lane : CommandLane.values()) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("priority", lane.getPriority());
+            metrics.put("outbox", outboxByLane.getOrDefault(lane, 0L));
+            metrics.put("inFlight", inFlightByLane.get(lane));
+            lanes.put(lane.name(), metrics);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("lanes", lanes);
+        AmqpAdmin admin = amqpAdmin.getIfAvailable();
+        if (admin != null) {
+            Map<String, Object> broker = new LinkedHashMap<>();
+            broker.put("queue", RabbitMQConfig.PC_COMMANDS_QUEUE);
+            try {
+                QueueInformation info = admin.getQueueInfo(RabbitMQConfig.PC_COMMANDS_QUEUE);
+                broker.put("messages", info != null ? info.getMessageCount() : null);
+                broker.put("consumers", info != null ? info.getConsumerCount() : null);
+            } catch (Exception e) {
+                log.warn("No se pudo consultar la cola {}: {}", RabbitMQConfig.PC_COMMANDS_QUEUE, e.getMessage());
+            }
+            summary.put("broker", broker);
+        }
+        return summary;
+    }
+
+    private boolean isFinal(Command.CommandStatus status) {
+        return status == Command.CommandStatus.EXECUTED || status == Command.CommandStatus.FAILED;
+    }
+
+    /**
+     * Resolves the target PCs of a batch from the in-memory PC directory.
+     *
+     * @param request Batch request
+     * @return New commands pre-filled with the target PC data
+     */
+    private List<Command> resolveBatchTargets(BatchCommandRequest request) {
+        int salaNumber = request.getSalaNumber();
+        if (!request.isAll() && request.getSubnet() != null) {
+            List<Command> targets = pcDirectory.findBySubnet(request.getSubnet()).stream()
+                    .filter(pc -> pc.getSalaNumber() == salaNumber)
+                    .map(this::target)
+                    .collect(Collectors.toList());
+            if (targets.isEmpty()) {
+                throw new IllegalArgumentException("No hay PCs de Sala " + salaNumber + " en la subred " + request.getSubnet());
+            }
+            return targets;
+        }
+        Set<Long> pcIds = request.isAll() ? Set.of() : new LinkedHashSet<>(request.getPcIds());
+
+        List<Command> targets = (request.isAll()
+                ? pcDirectory.findBySala(salaNumber).stream()
+                : pcIds.stream().map(pcId -> pcDirectory.find(salaNumber, pcId)).flatMap(Optional::stream))
+                .map(this::target)
+                .collect(Collectors.toList());
+
+        if (!request.isAll() && targets.size() != pcIds.size()) {
+            Set<Long> found = targets.stream().map(Command::getPcId).collect(Collectors.toSet());
+            List<Long> missing = pcIds.stream().filter(id -> !found.contains(id)).collect(Collectors.toList());
+            throw new IllegalArgumentException("PCs no encontrados en Sala " + salaNumber + " con IDs: " + missing);
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No hay PCs registrados en Sala " + salaNumber);
+        }
+        return targets;
+    }
+
+    private Command target(PcDirectory.Pc pc) {
+        return Command.builder()
+                .salaNumber(pc.getSalaNumber())
+                .pcId(pc.getId())
+                .computerName(pc.getName())
+                .targetIp(pc.getIp())
+                .macAddress(pc.getMac())
+                .build();
+    }
+
+    /**
+     * Builds the message in the format expected by the C# agent, including the
+     * correlation envelope (command ID, issue time and deadline). Issue time
+     * and deadline are provisional: {@link CommandOutboxRelay} stamps them again
+     * when the command is actually published.
+     *
+     * @param command  Persisted command
+     * @param issuedAt Issue time of the command
+     * @return Agent message
+     * @throws IllegalArgumentException If the action is not recognized
+     */
+    private AgentCommandMessage buildAgentMessage(Command command, Instant issuedAt) {
+        // Convertir acción del backend al formato del agente
+        String agentAction = ActionMapper.toAgentAction(command.getAction());
+        String parameters = command.getParameters() != null ? command.getParameters() : "";
+        Instant deadline = issuedAt.plus(ActionMapper.timeoutFor(command.getAction()));
+
+        if ("wakeup".equals(agentAction)) {
+            // Wake-on-LAN: targetIp vacío, incluir macAddress
+            // MAC en forma canónica (aa:bb:cc:dd:ee:ff) sea cual sea el formato guardado
+            String mac = NetAddress.normalizeMac(command.getMacAddress());
+            log.debug("Mensaje Wake-on-LAN: action={}, macAddress={}", agentAction, mac);
+            return AgentCommandMessage.builder()
+                    .action(agentAction)
+                    .targetIp("")
+                    .macAddress(mac != null ? mac : command.getMacAddress())
+                    .parameters(parameters)
+                    .commandId(command.getId())
+                    .issuedAt(issuedAt)
+                    .deadline(deadline)
+                    .build();
+        }
+
+        // Acciones normales: incluir targetIp, sin macAddress (será null y se excluirá
+        // del JSON)
+        log.debug("Mensaje normal: action={}, targetIp={}, parameters={}",
+                agentAction, command.getTargetIp(), command.getParameters());
+        return AgentCommandMessage.builder()
+                .action(agentAction)
+                .targetIp(command.getTargetIp())
+                .macAddress(null) // Explícitamente null para excluir del JSON
+                .parameters(parameters)
+                .commandId(command.getId())
+                .issuedAt(issuedAt)
+                .deadline(deadline)
+                .build();
+    }
+
+    /**
+     * Serializes the agent message into an outbox entry for the command.
+     *
+     * @param command      Persisted command
+     * @param agentMessage Message in agent format
+     * @return Outbox entry (not yet persisted)
+     */
+    private CommandOutbox toOutbox(Command command, AgentCommandMessage agentMessage) {
+        try {
+            return CommandOutbox.builder()
+                    .commandId(command.getId())
+                    .payload(objectMapper.writeValueAsString(agentMessage))
+                    .priority(ActionMapper.laneFor(command.getAction()).getPriority())
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el comando " + command.getId(), e);
+        }
+    }
+
+    private InFlightCommandRegistry.InFlightCommand toInFlight(Command command, AgentCommandMessage agentMessage) {
+        return new InFlightCommandRegistry.InFlightCommand(command.getId(), command.getSalaNumber(),
+                command.getPcId(), command.getAction(), agentMessage.getIssuedAt(), null);
+    }
+
+    /**
+     * Registers the commands in the in-flight index, without a deadline until
+     * the relay sends them. They are registered before the transaction that
+     * created them commits, so the relay never publishes a command the index
+     * does not know yet, and removed again if it rolls back.
+     *
+     * @param commands Issued commands
+     */
+    private void registerInFlight(List<InFlightCommandRegistry.InFlightCommand> commands) {
+        commands.forEach(inFlightCommandRegistry::register);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    commands.forEach(command -> inFlightCommandRegistry.resolve(command.getCommandId()));
+                }
+            }
+        });
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Gets the email of the authenticated user, if any.
+     *
+     * @return User email or null
+     */
+    private String currentUserEmail() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            return authentication.getName();
+        }
+        return null;
+    }
 }
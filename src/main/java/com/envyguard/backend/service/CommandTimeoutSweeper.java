@@ -0,0 +1,66 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.repository.CommandOutboxRepository;
+import com.envyguard.backend.repository.CommandRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Marks commands that were never answered as TIMED_OUT.
+ *
+ * Each tick advances the deadline wheel of {@link InFlightCommandRegistry},
+ * which only touches the buckets that elapsed, and writes every expired
+ * command with a single bulk UPDATE. Any outbox entry left for those commands
+ * is deleted in the same transaction, so the relay never publishes a command
+ * already reported as TIMED_OUT. The database is not queried when nothing
+ * expires.
+ */
+@Component
+@Slf4j
+public class CommandTimeoutSweeper {
+
+    private final InFlightCommandRegistry inFlightCommandRegistry;
+    private final CommandRepository commandRepository;
+    private final CommandOutboxRepository commandOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public CommandTimeoutSweeper(InFlightCommandRegistry inFlightCommandRegistry,
+            CommandRepository commandRepository,
+            CommandOutboxRepository commandOutboxRepository,
+            PlatformTransactionManager transactionManager) {
+        this.inFlightCommandRegistry = inFlightCommandRegistry;
+        this.commandRepository = commandRepository;
+        this.commandOutboxRepository = commandOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedRateString = "${commands.timeout.tick-ms:1000}")
+    public void sweep() {
+        List<InFlightCommandRegistry.InFlightCommand> expired = inFlightCommandRegistry.expire(Instant.now());
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = expired.stream()
+                .map(InFlightCommandRegistry.InFlightCommand::getCommandId)
+                .collect(Collectors.toList());
+        try {
+            int updated = transactionTemplate.execute(status -> {
+                commandOutboxRepository.deleteByCommandIds(ids);
+                return commandRepository.markTimedOut(ids, "Sin respuesta del agente antes del tiempo límite");
+            });
+            log.warn("{} comandos sin respuesta marcados como TIMED_OUT", updated);
+        } catch (Exception e) {
+            // Se vuelven a registrar para reintentar en el siguiente tick
+            expired.forEach(inFlightCommandRegistry::register);
+            log.error("Error al marcar comandos como TIMED_OUT: {}", e.getMessage());
+        }
+    }
+}
@@ -1,88 +1,381 @@
 package com.envyguard.backend.service;
 
-import com.envyguard.backend.dto.ComputerStatusDto;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.envyguard.backend.dto.FleetDelta;
+import com.envyguard.backend.dto.FleetPcState;
+import com.envyguard.backend.dto.FleetSyncResponse;
+import com.envyguard.backend.dto.PcStatusUpdate;
+import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.entity.Sala4;
+import com.envyguard.backend.repository.SalaStatusRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+/**
+ * State store with the latest known status of every PC.
+ *
+ * Fed by the single pc_status_updates ingest
+ * ({@link com.envyguard.backend.listener.PcStatusListener}) with updates
+ * already resolved to a PC of the {@link PcDirectory}. Only status changes
+ * are fanned out to WebSocket clients: as a versioned delta on
+ * {@value FleetStateStream#DESTINATION} ({@link FleetStateStream}) and, for
+ * existing clients, on /topic/pc-status and (Sala 4) /topic/computers.
+ * Heartbeats that only move last_seen are not broadcast; clients get the
+ * current last_seen from the fleet snapshot ({@link #syncFleet(Long)}).
+ *
+ * Persistence is write-behind: a heartbeat that does not change the status
+ * only updates the in-memory state and marks the PC dirty, and
+ * {@link #flushLastSeen()} writes the last_seen of all dirty PCs with one JDBC
+ * batch per sala every {@code status.flush-ms}. Status transitions (e.g.
+ * ONLINE to OFFLINE) are written through immediately; a transition whose
+ * write fails is retried, status and last_seen, by the same flush.
+ *
+ * Every report other than OFFLINE is a heartbeat for the {@link HeartbeatTracker};
+ * PCs that miss their deadline are turned OFFLINE by {@link HeartbeatSweeper}
+ * through {@link #markOffline(long, LocalDateTime)}.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ComputerStatusService {
 
-    // private final ComputerRepository computerRepository; // Removed field
-    private final com.envyguard.backend.repository.Sala4Repository sala4Repository;
+    private final SalaStatusRepository salaStatusRepository;
     private final SimpMessagingTemplate messagingTemplate;
-    private final ObjectMapper objectMapper;
+    private final StatusPipelineMetrics metrics;
+    private final HeartbeatTracker heartbeatTracker;
+    private final FleetStateStream fleetStateStream;
+    private final PcDirectory pcDirectory;
+    private final UptimeRecorder uptimeRecorder;
 
-    @RabbitListener(queues = "pc_status_updates")
-    public void updateStatus(org.springframework.amqp.core.Message message) {
-        try {
-            // Validar que el mensaje no sea nulo
-            if (message == null || message.getBody() == null) {
-                log.warn("Received null message in pc_status_updates - ignoring");
-                return;
+    private final Map<Long, PcState> states = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // Transiciones cuya escritura falló: el flush reescribe el estado completo
+    private final Set<Long> failedTransitions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastSeenGeneration = new AtomicLong();
+
+    /**
+     * Restores the statuses persisted in the four sala tables, so online
+     * counts and snapshots are right before the first heartbeats arrive.
+     * PCs restored as ONLINE get a full heartbeat deadline and are turned
+     * OFFLINE if they stay silent. Runs after the {@link PcDirectory} load.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void loadPersistedStates() {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (int sala = 1; sala <= 4; sala++) {
+            try {
+                for (SalaStatusRepository.PersistedStatus persisted : salaStatusRepository.findStatuses(sala)) {
+                    Optional<PcDirectory.Pc> pc = pcDirectory.find(sala, persisted.getPcId());
+                    if (pc.isEmpty()) {
+                        continue;
+                    }
+                    LocalDateTime lastSeen = persisted.getLastSeen() != null ? persisted.getLastSeen() : LocalDateTime.now();
+                    if (states.putIfAbsent(pc.get().getKey(), new PcState(pc.get(), persisted.getStatus(), lastSeen)) == null) {
+                        restored++;
+                        // El historial de disponibilidad empieza en el arranque
+                        uptimeRecorder.transition(pc.get(), persisted.getStatus(), LocalDateTime.now());
+                        if (persisted.getStatus() != Computer.ComputerStatus.OFFLINE) {
+                            heartbeatTracker.heartbeat(pc.get().getKey(), now);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Could not restore persisted statuses of Sala {}: {}", sala, e.getMessage());
+            }
+        }
+        lastSeenGeneration.incrementAndGet();
+        log.info("Restored persisted status of {} PCs", restored);
+    }
+
+    /**
+     * Applies a status update to a PC.
+     *
+     * @param pc     PC resolved from the directory
+     * @param status Reported status
+     * @return New state of the PC
+     */
+    public PcState apply(PcDirectory.Pc pc, Computer.ComputerStatus status) {
+        PcState state = new PcState(pc, status, LocalDateTime.now());
+        PcState previous = states.put(pc.getKey(), state);
+        metrics.increment(StatusPipelineMetrics.Stage.APPLIED);
+
+        if (status == Computer.ComputerStatus.OFFLINE) {
+            heartbeatTracker.forget(pc.getKey());
+        } else {
+            heartbeatTracker.heartbeat(pc.getKey(), System.currentTimeMillis());
+        }
+
+        if (previous == null || previous.getStatus() != status) {
+            // Transición de estado: se escribe y se difunde de inmediato
+            dirty.remove(pc.getKey());
+            failedTransitions.remove(pc.getKey());
+            persist(state);
+            uptimeRecorder.transition(pc, status, state.getLastSeen());
+            fleetStateStream.publish(previous, state);
+            broadcast(state);
+        } else {
+            // Solo cambia last_seen: se acumula para el siguiente flush
+            dirty.add(pc.getKey());
+            metrics.increment(StatusPipelineMetrics.Stage.DEFERRED);
+        }
+        return state;
+    }
+
+    /**
+     * Turns a PC OFFLINE because it missed its heartbeat deadline. The last
+     * seen time is kept; nothing happens if the PC is already OFFLINE or
+     * reported again after {@code seenBefore}.
+     *
+     * @param key        PC key ({@link PcDirectory#key(int, long)})
+     * @param seenBefore Only PCs last seen at or before this time are changed
+     * @return Whether the PC was turned OFFLINE
+     */
+    public boolean markOffline(long key, LocalDateTime seenBefore) {
+        PcState current = states.get(key);
+        if (current == null
+                || current.getStatus() == Computer.ComputerStatus.OFFLINE
+                || current.getLastSeen().isAfter(seenBefore)) {
+            return false;
+        }
+        PcState offline = new PcState(current.getPc(), Computer.ComputerStatus.OFFLINE, current.getLastSeen());
+        // Si llegó un heartbeat entre medias, el estado ya no es el mismo objeto
+        if (!states.replace(key, current, offline)) {
+            return false;
+        }
+        metrics.increment(StatusPipelineMetrics.Stage.HEARTBEAT_MISSED);
+        dirty.remove(key);
+        failedTransitions.remove(key);
+        persist(offline);
+        // Se considera caído desde su último heartbeat
+        uptimeRecorder.transition(offline.getPc(), Computer.ComputerStatus.OFFLINE, offline.getLastSeen());
+        fleetStateStream.publish(current, offline);
+        broadcast(offline);
+        return true;
+    }
+
+    /**
+     * Gets what a (re)connecting client needs to follow the fleet: the deltas
+     * after {@code since} when they are still buffered, otherwise a snapshot
+     * of every PC of the directory.
+     *
+     * @param since Fleet version the client already has (null for a snapshot)
+     * @return Deltas or snapshot, with the fleet version they bring the client to
+     */
+    public FleetSyncResponse syncFleet(Long since) {
+        if (since != null) {
+            List<FleetDelta> deltas = fleetStateStream.deltasSince(since);
+            if (deltas != null) {
+                return FleetSyncResponse.builder()
+                        .version(since + deltas.size())
+                        .snapshot(false)
+                        .deltas(deltas)
+                        .build();
             }
+        }
+
+        // La versión se lee antes que los estados: el snapshot puede ser más
+        // nuevo que su versión, y reaplicar esos deltas no cambia nada
+        long version = fleetStateStream.getVersion();
+        List<FleetPcState> pcs = pcDirectory.findAll().stream().map(pc -> {
+            PcState state = states.get(pc.getKey());
+            return FleetPcState.builder()
+                    .sala(pc.getSalaNumber())
+                    .pcId(pc.getId())
+                    .name(pc.getName())
+                    .ip(pc.getIp())
+                    .status(state != null ? state.getStatus() : Computer.ComputerStatus.UNKNOWN)
+                    .lastSeen(state != null ? state.getLastSeen() : null)
+                    .build();
+        }).collect(Collectors.toList());
+        return FleetSyncResponse.builder()
+                .version(version)
+                .snapshot(true)
+                .pcs(pcs)
+                .build();
+    }
 
-            String jsonMessage = new String(message.getBody());
-            
-            // Validar que el mensaje no esté vacío
-            if (jsonMessage == null || jsonMessage.trim().isEmpty()) {
-                log.warn("Received empty message in pc_status_updates - ignoring");
-                return;
+    /**
+     * Retries the status transitions whose write failed, then writes the
+     * last_seen of every PC that received heartbeats since the previous
+     * flush, with one JDBC batch per sala. PCs whose write fails are retried
+     * on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${status.flush-ms:5000}")
+    @PreDestroy
+    public void flushLastSeen() {
+        retryFailedTransitions();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<Long, LocalDateTime>> bySala = new TreeMap<>();
+        Map<Integer, List<Long>> keysBySala = new TreeMap<>();
+        for (Iterator<Long> iterator = dirty.iterator(); iterator.hasNext();) {
+            Long key = iterator.next();
+            iterator.remove();
+            PcState state = states.get(key);
+            if (state != null) {
+                int sala = state.getPc().getSalaNumber();
+                bySala.computeIfAbsent(sala, s -> new HashMap<>()).put(state.getPc().getId(), state.getLastSeen());
+                keysBySala.computeIfAbsent(sala, s -> new ArrayList<>()).add(key);
             }
+        }
 
-            log.debug("Received status update: {}", jsonMessage);
-            
-            ComputerStatusDto statusDto;
+        bySala.forEach((sala, lastSeenById) -> {
             try {
-                statusDto = objectMapper.readValue(jsonMessage, ComputerStatusDto.class);
+                salaStatusRepository.updateLastSeen(sala, lastSeenById);
+                lastSeenGeneration.incrementAndGet();
+                metrics.add(StatusPipelineMetrics.Stage.PERSISTED, lastSeenById.size());
+                log.debug("Flushed last_seen of {} PCs in Sala {}", lastSeenById.size(), sala);
             } catch (Exception e) {
-                log.error("Failed to parse status update message: {}", e.getMessage());
-                return; // No relanzar la excepción
+                dirty.addAll(keysBySala.get(sala));
+                metrics.increment(StatusPipelineMetrics.Stage.PERSIST_FAILED);
+                log.warn("Could not flush last_seen for Sala {}: {}", sala, e.getMessage());
             }
+        });
+    }
 
-            // Validar que el DTO tenga datos válidos
-            if (statusDto == null || statusDto.getIpAddress() == null) {
-                log.warn("Received invalid status update - missing IP address");
-                return;
+    private void retryFailedTransitions() {
+        if (failedTransitions.isEmpty()) {
+            return;
+        }
+        // Copia: persist() vuelve a añadir las que fallen de nuevo
+        List<Long> keys = new ArrayList<>(failedTransitions);
+        failedTransitions.removeAll(keys);
+        for (Long key : keys) {
+            PcState state = states.get(key);
+            if (state != null) {
+                // updateStatus también escribe last_seen
+                dirty.remove(key);
+                persist(state);
             }
+        }
+    }
 
-            // Update Sala4 table (Now the primary source)
-            try {
-                java.util.Optional<com.envyguard.backend.entity.Sala4> sala4Opt = sala4Repository
-                        .findByIp(statusDto.getIpAddress());
-                if (sala4Opt.isPresent()) {
-                    com.envyguard.backend.entity.Sala4 sala4 = sala4Opt.get();
-                    try {
-                        sala4.setStatus(com.envyguard.backend.entity.Computer.ComputerStatus
-                                .valueOf(statusDto.getStatus().toUpperCase()));
-                    } catch (Exception e) {
-                        sala4.setStatus(com.envyguard.backend.entity.Computer.ComputerStatus.UNKNOWN);
-                    }
-                    sala4.setLastSeen(LocalDateTime.now());
+    /**
+     * @return Number of last_seen flushes so far; changes whenever persisted
+     *         last_seen values move without a status transition
+     */
+    public long getLastSeenGeneration() {
+        return lastSeenGeneration.get();
+    }
+
+    /**
+     * @return Number of PCs with a last_seen not yet written to the database
+     */
+    public int getDirtyCount() {
+        return dirty.size();
+    }
 
-                    com.envyguard.backend.entity.Sala4 savedSala4 = sala4Repository.save(sala4);
-                    log.debug("Updated Sala4 status for IP: {}", statusDto.getIpAddress());
+    /**
+     * @return Number of PCs whose last status transition is not yet written
+     *         to the database
+     */
+    public int getFailedTransitionCount() {
+        return failedTransitions.size();
+    }
 
-                    // Broadcast to frontend (Sending Sala4 entity now)
-                    messagingTemplate.convertAndSend("/topic/computers", savedSala4);
-                } else {
-                    log.warn("Computer with IP {} not found in Sala 4", statusDto.getIpAddress());
-                }
-            } catch (Exception e) {
-                log.warn("Could not update Sala4 status: {}", e.getMessage());
-            }
+    /**
+     * @param salaNumber Sala number
+     * @param pcId       PC ID in the sala table
+     * @return Latest known state of the PC, if any update was received
+     */
+    public Optional<PcState> getState(int salaNumber, Long pcId) {
+        return Optional.ofNullable(states.get(PcDirectory.key(salaNumber, pcId)));
+    }
 
+    /**
+     * @param status Status to count
+     * @return Number of PCs of all salas whose latest known status is the given one
+     */
+    public long countByStatus(Computer.ComputerStatus status) {
+        return states.values().stream().filter(state -> state.getStatus() == status).count();
+    }
+
+    /**
+     * @return Latest known state of every PC that reported at least once
+     */
+    public Collection<PcState> getStates() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
+    private void persist(PcState state) {
+        PcDirectory.Pc pc = state.getPc();
+        try {
+            salaStatusRepository.updateStatus(pc.getSalaNumber(), pc.getId(), state.getStatus(), state.getLastSeen());
+            metrics.increment(StatusPipelineMetrics.Stage.PERSISTED);
+            log.debug("Updated Sala {} status for IP {}: {}", pc.getSalaNumber(), pc.getIp(), state.getStatus());
         } catch (Exception e) {
-            log.error("Error processing status update: {}", e.getMessage(), e);
-            // NO relanzar la excepción para evitar bucles infinitos
+            // Se reintenta (estado y last_seen) en el siguiente flush
+            failedTransitions.add(pc.getKey());
+            metrics.increment(StatusPipelineMetrics.Stage.PERSIST_FAILED);
+            log.warn("Could not update Sala {} status: {}", pc.getSalaNumber(), e.getMessage());
         }
     }
+
+    private void broadcast(PcState state) {
+        PcDirectory.Pc pc = state.getPc();
+        try {
+            messagingTemplate.convertAndSend("/topic/pc-status", PcStatusUpdate.builder()
+                    .pcId(pc.getId())
+                    .pcName(pc.getName())
+                    .ipAddress(pc.getIp())
+                    .macAddress(pc.getMac())
+                    .status(state.getStatus().name())
+                    .timestamp(state.getLastSeen().toString())
+                    .build());
+            metrics.increment(StatusPipelineMetrics.Stage.BROADCAST);
+
+            if (pc.getSalaNumber() == 4) {
+                // Formato de la entidad Sala4 que ya consume el frontend
+                messagingTemplate.convertAndSend("/topic/computers", Sala4.builder()
+                        .id(pc.getId())
+                        .nombrePc(pc.getName())
+                        .ip(pc.getIp())
+                        .mac(pc.getMac())
+                        .status(state.getStatus())
+                        .lastSeen(state.getLastSeen())
+                        .build());
+                metrics.increment(StatusPipelineMetrics.Stage.BROADCAST);
+            }
+        } catch (Exception e) {
+            log.error("Failed to broadcast status via WebSocket: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Latest known status of a PC.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PcState {
+        private final PcDirectory.Pc pc;
+        private final Computer.ComputerStatus status;
+        private final LocalDateTime lastSeen;
+    }
 }
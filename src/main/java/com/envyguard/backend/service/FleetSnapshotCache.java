@@ -0,0 +1,114 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.entity.Sala4;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Pre-serialized snapshots of the PC list for the polled computer endpoints.
+ *
+ * Each view is built from the in-memory state store and the {@link PcDirectory},
+ * serialized once to JSON bytes and tagged with a strong ETag (MD5 of the
+ * bytes, as Spring's ShallowEtagHeaderFilter does). It is only rebuilt when
+ * the fleet version, the last_seen flush generation or the directory
+ * generation changes, so polling clients cost neither a DB query nor Jackson
+ * work, and a matching If-None-Match becomes a 304.
+ */
+@Component
+@RequiredArgsConstructor
+public class FleetSnapshotCache {
+
+    /**
+     * Shapes of the PC list served by the computer endpoints.
+     */
+    public enum View {
+        /** Sala 4 PCs as {@link Sala4} entities (/public/computers). */
+        SALA4,
+        /** Sala 4 PCs as {@link Computer} DTOs (/computers). */
+        COMPUTERS
+    }
+
+    private final ComputerStatusService computerStatusService;
+    private final FleetStateStream fleetStateStream;
+    private final PcDirectory pcDirectory;
+    private final ObjectMapper objectMapper;
+
+    private final Map<View, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @param view Requested view
+     * @return Serialized view for the current state, rebuilt if the state changed
+     */
+    public Snapshot get(View view) {
+        String stamp = fleetStateStream.getVersion() + "." + computerStatusService.getLastSeenGeneration()
+                + "." + pcDirectory.getGeneration();
+        Snapshot current = snapshots.get(view);
+        if (current != null && current.stamp.equals(stamp)) {
+            return current;
+        }
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(build(view));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + view + " snapshot", e);
+        }
+        Snapshot rebuilt = new Snapshot(stamp, body, "\"0" + DigestUtils.md5DigestAsHex(body) + "\"");
+        snapshots.put(view, rebuilt);
+        return rebuilt;
+    }
+
+    private List<?> build(View view) {
+        return pcDirectory.findBySala(4).stream().map(pc -> {
+            ComputerStatusService.PcState state = computerStatusService.getState(4, pc.getId()).orElse(null);
+            // Un PC que no ha reportado desde el arranque se muestra OFFLINE
+            Computer.ComputerStatus status = state != null ? state.getStatus() : Computer.ComputerStatus.OFFLINE;
+            if (view == View.SALA4) {
+                return Sala4.builder()
+                        .id(pc.getId())
+                        .nombrePc(pc.getName())
+                        .ip(pc.getIp())
+                        .mac(pc.getMac())
+                        .status(status)
+                        .lastSeen(state != null ? state.getLastSeen() : null)
+                        .build();
+            }
+            return Computer.builder()
+                    .id(pc.getId())
+                    .name(pc.getName())
+                    .ipAddress(pc.getIp())
+                    .macAddress(pc.getMac())
+                    .status(status)
+                    .lastSeen(state != null ? state.getLastSeen() : null)
+                    .roomNumber(4)
+                    .labName("Sala 4")
+                    .build();
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * One serialized view and its ETag.
+     */
+    @Getter
+    public static final class Snapshot {
+        private final String stamp;
+        private final byte[] body;
+        private final String etag;
+
+        private Snapshot(String stamp, byte[] body, String etag) {
+            this.stamp = stamp;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+}
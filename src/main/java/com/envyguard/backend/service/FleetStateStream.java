@@ -0,0 +1,114 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.dto.FleetDelta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Versioned stream of fleet changes published on {@value #DESTINATION}.
+ *
+ * Every change gets the next version of the fleet and only carries the fields
+ * that changed. The last {@code fleet.delta-buffer-size} deltas are kept in a
+ * ring buffer so a reconnecting client can catch up from the version it
+ * already has instead of reloading the whole fleet.
+ *
+ * Deltas are sent through the {@link BroadcastCoalescer}, so each frame on the
+ * topic is an array of deltas. Deltas of the same PC within a window are
+ * merged into one carrying the newest version, so a frame may skip versions;
+ * clients keep the highest version they applied. Versions are seeded with
+ * the start time in milliseconds, so they keep growing across restarts and a
+ * version from a previous run is never mistaken for a current one.
+ */
+@Component
+public class FleetStateStream {
+
+    public static final String DESTINATION = "/topic/fleet";
+
+    private final BroadcastCoalescer broadcastCoalescer;
+    private final FleetDelta[] buffer;
+
+    private long version = System.currentTimeMillis();
+    private long oldestBuffered = version + 1;
+
+    public FleetStateStream(BroadcastCoalescer broadcastCoalescer,
+                            @Value("${fleet.delta-buffer-size:4096}") int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("fleet.delta-buffer-size must be positive");
+        }
+        this.broadcastCoalescer = broadcastCoalescer;
+        this.buffer = new FleetDelta[bufferSize];
+    }
+
+    /**
+     * Publishes the change between two states of a PC.
+     *
+     * @param previous Previous state (null if the PC never reported)
+     * @param current  New state
+     * @return The published delta, or null if no field changed
+     */
+    public synchronized FleetDelta publish(ComputerStatusService.PcState previous,
+                                           ComputerStatusService.PcState current) {
+        boolean statusChanged = previous == null || previous.getStatus() != current.getStatus();
+        boolean lastSeenChanged = previous == null || !Objects.equals(previous.getLastSeen(), current.getLastSeen());
+        if (!statusChanged && !lastSeenChanged) {
+            return null;
+        }
+
+        FleetDelta delta = FleetDelta.builder()
+                .version(++version)
+                .sala(current.getPc().getSalaNumber())
+                .pcId(current.getPc().getId())
+                .status(statusChanged ? current.getStatus() : null)
+                .lastSeen(lastSeenChanged ? current.getLastSeen() : null)
+                .build();
+        buffer[(int) (version % buffer.length)] = delta;
+        if (version - oldestBuffered >= buffer.length) {
+            oldestBuffered = version - buffer.length + 1;
+        }
+
+        broadcastCoalescer.submit(DESTINATION, PcDirectory.key(delta.getSala(), delta.getPcId()), delta,
+                FleetStateStream::merge);
+        return delta;
+    }
+
+    // Los campos del delta más nuevo prevalecen; los ausentes se toman del pendiente
+    private static FleetDelta merge(FleetDelta pending, FleetDelta newer) {
+        return FleetDelta.builder()
+                .version(newer.getVersion())
+                .sala(newer.getSala())
+                .pcId(newer.getPcId())
+                .status(newer.getStatus() != null ? newer.getStatus() : pending.getStatus())
+                .lastSeen(newer.getLastSeen() != null ? newer.getLastSeen() : pending.getLastSeen())
+                .build();
+    }
+
+    /**
+     * @return Current version of the fleet
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the deltas published after a version, oldest first.
+     *
+     * @param since Version the client already has
+     * @return The deltas (empty if the client is up to date), or null if they
+     *         are no longer buffered or the version is unknown, in which case
+     *         the client needs a snapshot
+     */
+    public synchronized List<FleetDelta> deltasSince(long since) {
+        if (since > version || since + 1 < oldestBuffered) {
+            return null;
+        }
+        List<FleetDelta> deltas = new ArrayList<>((int) (version - since));
+        for (long v = since + 1; v <= version; v++) {
+            deltas.add(buffer[(int) (v % buffer.length)]);
+        }
+        return deltas;
+    }
+}
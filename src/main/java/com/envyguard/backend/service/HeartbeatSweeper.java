@@ -0,0 +1,47 @@
+package com.envyguard.backend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Marks PCs that stopped sending heartbeats as OFFLINE.
+ *
+ * Each tick advances the deadline wheel of {@link HeartbeatTracker}, which only
+ * touches the buckets that elapsed, and hands every expired PC to the
+ * {@link ComputerStatusService} state store, which writes the transition
+ * through and broadcasts it.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class HeartbeatSweeper {
+
+    private final HeartbeatTracker heartbeatTracker;
+    private final ComputerStatusService computerStatusService;
+
+    @Scheduled(fixedRateString = "${status.heartbeat.tick-ms:1000}")
+    public void sweep() {
+        List<Long> expired = heartbeatTracker.expire(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        // Solo se marcan los PCs cuyo último heartbeat es anterior al límite
+        LocalDateTime seenBefore = LocalDateTime.now().minus(Duration.ofMillis(heartbeatTracker.getTimeoutMillis()));
+        int marked = 0;
+        for (Long key : expired) {
+            if (computerStatusService.markOffline(key, seenBefore)) {
+                marked++;
+            }
+        }
+        if (marked > 0) {
+            log.warn("{} PCs sin heartbeat marcados como OFFLINE", marked);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.util.HashedTimingWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heartbeat deadlines of the PCs of all salas.
+ *
+ * Every heartbeat pushes the deadline of its PC to
+ * {@code interval-ms * missed-threshold} in the future. Each PC has at most one
+ * entry in a {@link HashedTimingWheel}, tracked by the armed set independently
+ * of the deadline: a heartbeat only updates the deadline map (scheduling an
+ * entry only if none is in the wheel, even after {@link #forget(long)}), and
+ * when the entry fires {@link #expire(long)} re-arms it at the current
+ * deadline if the PC reported in the meantime. Detecting missed heartbeats
+ * therefore never scans the PC tables or the whole state store.
+ */
+@Component
+public class HeartbeatTracker {
+
+    /**
+     * Resolution of the deadline wheel. 512 one-second buckets cover one
+     * rotation every ~8.5 minutes; longer deadlines simply wait extra rotations.
+     */
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512;
+
+    private final long timeoutMillis;
+    private final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+    // PCs con una entrada en la rueda, tengan o no deadline
+    private final Set<Long> armed = ConcurrentHashMap.newKeySet();
+    private final HashedTimingWheel<Long> wheel =
+            new HashedTimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+
+    /**
+     * @param intervalMs      Expected interval between agent heartbeats
+     * @param missedThreshold Heartbeats that may be missed before the PC is
+     *                        considered OFFLINE
+     */
+    public HeartbeatTracker(@Value("${status.heartbeat.interval-ms:30000}") long intervalMs,
+                            @Value("${status.heartbeat.missed-threshold:3}") int missedThreshold) {
+        if (intervalMs <= 0 || missedThreshold <= 0) {
+            throw new IllegalArgumentException("status.heartbeat.interval-ms and missed-threshold must be positive");
+        }
+        this.timeoutMillis = intervalMs * missedThreshold;
+    }
+
+    /**
+     * Records a heartbeat and moves the deadline of the PC forward.
+     *
+     * @param key       PC key ({@link PcDirectory#key(int, long)})
+     * @param nowMillis Time of the heartbeat in epoch milliseconds
+     */
+    public void heartbeat(long key, long nowMillis) {
+        long deadline = nowMillis + timeoutMillis;
+        deadlines.put(key, deadline);
+        if (armed.add(key)) {
+            wheel.schedule(key, deadline);
+        }
+    }
+
+    /**
+     * Stops tracking a PC (e.g. the agent reported OFFLINE itself). Its wheel
+     * entry stays until it fires, and is reused by the next heartbeat.
+     *
+     * @param key PC key
+     */
+    public void forget(long key) {
+        deadlines.remove(key);
+    }
+
+    /**
+     * Advances the deadline wheel and returns the PCs that missed their
+     * deadline, which stop being tracked until their next heartbeat. Must be
+     * called from a single thread.
+     *
+     * @param nowMillis Current time in epoch milliseconds
+     * @return Keys of the PCs whose heartbeat deadline expired
+     */
+    public List<Long> expire(long nowMillis) {
+        List<Long> expired = new ArrayList<>();
+        for (Long key : wheel.advance(nowMillis)) {
+            Long deadline = deadlines.get(key);
+            if (deadline == null) {
+                // Olvidado con forget(): la entrada de la rueda se descarta
+                disarm(key);
+            } else if (deadline > nowMillis) {
+                wheel.schedule(key, deadline);
+            } else if (deadlines.remove(key, deadline)) {
+                expired.add(key);
+                disarm(key);
+            } else {
+                // Llegó un heartbeat mientras expiraba: se re-arma con el nuevo deadline
+                Long current = deadlines.get(key);
+                if (current != null) {
+                    wheel.schedule(key, current);
+                } else {
+                    disarm(key);
+                }
+            }
+        }
+        return expired;
+    }
+
+    // Un heartbeat concurrente pudo ver la entrada aún armada y no programar otra
+    private void disarm(Long key) {
+        armed.remove(key);
+        Long deadline = deadlines.get(key);
+        if (deadline != null && armed.add(key)) {
+            wheel.schedule(key, deadline);
+        }
+    }
+
+    /**
+     * @return Time without heartbeats after which a PC is considered OFFLINE
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return Number of PCs currently tracked
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * @return Number of entries in the deadline wheel
+     */
+    int scheduled() {
+        return wheel.size();
+    }
+}
@@ -0,0 +1,216 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Command;
+import com.envyguard.backend.repository.CommandRepository;
+import com.envyguard.backend.util.ActionMapper;
+import com.envyguard.backend.util.CommandLane;
+import com.envyguard.backend.util.HashedTimingWheel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory index of commands that were issued but not answered yet, keyed by
+ * command ID. Agent responses are resolved against it in O(1) and the per-sala
+ * counters can be used for backpressure.
+ *
+ * A command gets its deadline when it is actually sent to the broker
+ * ({@link #markSent}), not when it is created: a command waiting in the outbox
+ * while the broker is down does not time out. From then on it is scheduled in
+ * a {@link HashedTimingWheel} at its deadline, so {@link #expire(Instant)}
+ * finds timed-out commands without scanning the index or polling the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InFlightCommandRegistry {
+
+    /**
+     * Resolution of the deadline wheel. 512 one-second buckets cover one
+     * rotation every ~8.5 minutes; longer deadlines simply wait extra rotations.
+     */
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512;
+
+    private final CommandRepository commandRepository;
+
+    private final Map<Long, InFlightCommand> inFlight = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> countsBySala = new ConcurrentHashMap<>();
+    private final Map<CommandLane, AtomicInteger> countsByLane = new ConcurrentHashMap<>();
+    private final HashedTimingWheel<Long> deadlines =
+            new HashedTimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+
+    /**
+     * Reloads PENDING and SENT commands after a restart so their responses can
+     * still be correlated.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInFlightCommands() {
+        List<Command> commands = commandRepository.findByStatusIn(
+                List.of(Command.CommandStatus.PENDING, Command.CommandStatus.SENT));
+        for (Command command : commands) {
+            Instant issuedAt = toInstant(command.getCreatedAt());
+            // Los PENDING siguen en el outbox: su deadline empieza cuando el relay los envíe
+            Instant deadline = command.getStatus() == Command.CommandStatus.SENT
+                    ? toInstant(command.getSentAt() != null ? command.getSentAt() : command.getCreatedAt())
+                            .plus(ActionMapper.timeoutFor(command.getAction()))
+                    : null;
+            register(new InFlightCommand(command.getId(), command.getSalaNumber(), command.getPcId(),
+                    command.getAction(), issuedAt, deadline));
+        }
+        log.info("Loaded {} in-flight commands", commands.size());
+    }
+
+    /**
+     * Registers an issued command. It is only scheduled for timeout if it
+     * already has a deadline.
+     *
+     * @param command In-flight command
+     */
+    public void register(InFlightCommand command) {
+        if (inFlight.put(command.getCommandId(), command) == null) {
+            countsBySala.computeIfAbsent(command.getSalaNumber(), sala -> new AtomicInteger()).incrementAndGet();
+            countsByLane.computeIfAbsent(ActionMapper.laneFor(command.getAction()), lane -> new AtomicInteger())
+                    .incrementAndGet();
+        }
+        if (command.getDeadline() != null) {
+            deadlines.schedule(command.getCommandId(), command.getDeadline().toEpochMilli());
+        }
+    }
+
+    /**
+     * Starts the deadline of a command once the broker confirmed it.
+     *
+     * @param commandId Command ID
+     * @param sentAt    Time the command was sent
+     * @return The updated entry, or null if the command is not in flight
+     */
+    public InFlightCommand markSent(Long commandId, Instant sentAt) {
+        InFlightCommand sent = inFlight.computeIfPresent(commandId, (id, command) -> new InFlightCommand(id,
+                command.getSalaNumber(), command.getPcId(), command.getAction(), command.getIssuedAt(),
+                sentAt.plus(ActionMapper.timeoutFor(command.getAction()))));
+        if (sent != null) {
+            deadlines.schedule(commandId, sent.getDeadline().toEpochMilli());
+        }
+        return sent;
+    }
+
+    /**
+     * Advances the deadline wheel and removes every command whose deadline has
+     * passed. Must be called from a single thread.
+     *
+     * @param now Current time
+     * @return Commands that timed out (removed from the index)
+     */
+    public List<InFlightCommand> expire(Instant now) {
+        List<InFlightCommand> expired = new ArrayList<>();
+        for (Long commandId : deadlines.advance(now.toEpochMilli())) {
+            InFlightCommand command = inFlight.get(commandId);
+            // Ya resuelto o re-registrado con otro deadline: se ignora (cancelación perezosa)
+            if (command != null && command.getDeadline() != null && !command.getDeadline().isAfter(now)
+                    && resolve(commandId) != null) {
+                expired.add(command);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Removes a command from the index once it has a final result.
+     *
+     * @param commandId Command ID
+     * @return The in-flight entry, or null if the command was not in flight
+     */
+    public InFlightCommand resolve(Long commandId) {
+        if (commandId == null) {
+            return null;
+        }
+        InFlightCommand removed = inFlight.remove(commandId);
+        if (removed != null) {
+            countsBySala.get(removed.getSalaNumber()).decrementAndGet();
+            countsByLane.get(ActionMapper.laneFor(removed.getAction())).decrementAndGet();
+        }
+        return removed;
+    }
+
+    /**
+     * Gets an in-flight command without removing it.
+     *
+     * @param commandId Command ID
+     * @return The in-flight entry, or null
+     */
+    public InFlightCommand get(Long commandId) {
+        return commandId != null ? inFlight.get(commandId) : null;
+    }
+
+    /**
+     * @return Total number of in-flight commands
+     */
+    public int count() {
+        return inFlight.size();
+    }
+
+    /**
+     * @param salaNumber Sala number
+     * @return Number of in-flight commands for the sala
+     */
+    public int count(int salaNumber) {
+        AtomicInteger counter = countsBySala.get(salaNumber);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * @return In-flight command count per sala
+     */
+    public Map<Integer, Integer> countsBySala() {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        countsBySala.forEach((sala, counter) -> counts.put(sala, counter.get()));
+        return counts;
+    }
+
+    /**
+     * @return In-flight command count per dispatch lane (every lane present)
+     */
+    public Map<CommandLane, Integer> countsByLane() {
+        Map<CommandLane, Integer> counts = new EnumMap<>(CommandLane.class);
+        for (CommandLane lane : CommandLane.values()) {
+            AtomicInteger counter = countsByLane.get(lane);
+            counts.put(lane, counter != null ? counter.get() : 0);
+        }
+        return counts;
+    }
+
+    private static Instant toInstant(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant() : Instant.now();
+    }
+
+    /**
+     * Command issued to an agent and still waiting for its response. The
+     * deadline is null while the command has not been sent.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class InFlightCommand {
+        private final Long commandId;
+        private final Integer salaNumber;
+        private final Long pcId;
+        private final String action;
+        private final Instant issuedAt;
+        private final Instant deadline;
+    }
+}
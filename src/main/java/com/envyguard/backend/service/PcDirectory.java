@@ -0,0 +1,267 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.repository.Sala1Repository;
+import com.envyguard.backend.repository.Sala2Repository;
+import com.envyguard.backend.repository.Sala3Repository;
+import com.envyguard.backend.repository.Sala4Repository;
+import com.envyguard.backend.util.LongHashMap;
+import com.envyguard.backend.util.NetAddress;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory directory of the PCs of all salas (sala_1..sala_4).
+ *
+ * The four tables are loaded at startup into an immutable snapshot indexed by
+ * (sala, id), by IP and by MAC, so command creation, broadcasts and status
+ * ingest resolve their targets without a database round trip. IPs and MACs
+ * are indexed in binary form ({@link NetAddress}) in primitive long maps, and
+ * IPs also in a sorted array for subnet range lookups. The snapshot is
+ * rebuilt periodically ({@code pc-directory.refresh-ms}) and can be reloaded
+ * on demand with {@link #reload()}; readers always see a complete snapshot.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PcDirectory {
+
+    private final Sala1Repository sala1Repository;
+    private final Sala2Repository sala2Repository;
+    private final Sala3Repository sala3Repository;
+    private final Sala4Repository sala4Repository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile long generation;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    @Scheduled(initialDelayString = "${pc-directory.refresh-ms:60000}",
+            fixedDelayString = "${pc-directory.refresh-ms:60000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * Reloads the four sala tables and atomically replaces the snapshot.
+     */
+    public synchronized void reload() {
+        List<Pc> pcs = new ArrayList<>();
+        sala1Repository.findAll().forEach(pc -> pcs.add(new Pc(1, pc.getId(), pc.getNombrePc(), pc.getIp(), pc.getMac())));
+        sala2Repository.findAll().forEach(pc -> pcs.add(new Pc(2, pc.getId(), pc.getNombrePc(), pc.getIp(), pc.getMac())));
+        sala3Repository.findAll().forEach(pc -> pcs.add(new Pc(3, pc.getId(), pc.getNombrePc(), pc.getIp(), pc.getMac())));
+        sala4Repository.findAll().forEach(pc -> pcs.add(new Pc(4, pc.getId(), pc.getNombrePc(), pc.getIp(), pc.getMac())));
+
+        Snapshot previous = snapshot;
+        snapshot = new Snapshot(pcs);
+        generation++;
+        if (previous.all.size() != pcs.size()) {
+            log.info("PC directory loaded: {} PCs ({} per sala)", pcs.size(), snapshot.countsBySala());
+        }
+    }
+
+    /**
+     * @param salaNumber Sala number (1-4)
+     * @param pcId       PC ID in the sala table
+     * @return PC, if it exists
+     */
+    public Optional<Pc> find(int salaNumber, Long pcId) {
+        Map<Long, Pc> sala = snapshot.bySala.get(salaNumber);
+        return sala == null || pcId == null ? Optional.empty() : Optional.ofNullable(sala.get(pcId));
+    }
+
+    /**
+     * @param salaNumber Sala number (1-4)
+     * @return PCs of the sala ordered by ID (empty if none)
+     */
+    public List<Pc> findBySala(int salaNumber) {
+        Map<Long, Pc> sala = snapshot.bySala.get(salaNumber);
+        return sala == null ? List.of() : List.copyOf(sala.values());
+    }
+
+    /**
+     * @param ip IP address
+     * @return PC with that IP, if any
+     */
+    public Optional<Pc> findByIp(String ip) {
+        long value = NetAddress.parseIpv4(ip);
+        return value == NetAddress.INVALID ? Optional.empty() : Optional.ofNullable(snapshot.byIp.get(value));
+    }
+
+    /**
+     * @param mac MAC address in any case, with ':', '-' or '.' separators or none
+     * @return PC with that MAC, if any
+     */
+    public Optional<Pc> findByMac(String mac) {
+        long value = NetAddress.parseMac(mac);
+        return value == NetAddress.INVALID ? Optional.empty() : Optional.ofNullable(snapshot.byMac.get(value));
+    }
+
+    /**
+     * @param cidr IPv4 subnet, e.g. 10.0.120.0/24
+     * @return PCs whose IP is in the subnet, ordered by IP
+     * @throws IllegalArgumentException If the subnet is malformed
+     */
+    public List<Pc> findBySubnet(String cidr) {
+        NetAddress.Ipv4Range range = NetAddress.parseCidr(cidr);
+        Snapshot current = snapshot;
+        int from = Arrays.binarySearch(current.sortedIps, range.getFirst());
+        if (from < 0) {
+            from = -from - 1;
+        } else {
+            // Con IPs duplicadas binarySearch puede caer en cualquiera de ellas
+            while (from > 0 && current.sortedIps[from - 1] == range.getFirst()) {
+                from--;
+            }
+        }
+        List<Pc> pcs = new ArrayList<>();
+        for (int i = from; i < current.sortedIps.length && current.sortedIps[i] <= range.getLast(); i++) {
+            pcs.add(current.pcsBySortedIp[i]);
+        }
+        return pcs;
+    }
+
+    /**
+     * @return All PCs ordered by sala and ID
+     */
+    public List<Pc> findAll() {
+        return snapshot.all;
+    }
+
+    /**
+     * @return Total number of PCs
+     */
+    public int count() {
+        return snapshot.all.size();
+    }
+
+    /**
+     * @return Number of PCs per sala
+     */
+    public Map<Integer, Integer> countsBySala() {
+        return snapshot.countsBySala();
+    }
+
+    /**
+     * @return Number of reloads so far; changes every time the snapshot is replaced
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Builds a key that identifies a PC across all salas.
+     *
+     * @param salaNumber Sala number (1-4)
+     * @param pcId       PC ID in the sala table
+     * @return Unique key of the PC
+     */
+    public static long key(int salaNumber, long pcId) {
+        return ((long) salaNumber << 48) | pcId;
+    }
+
+    /**
+     * Immutable view of a PC of one of the sala tables.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Pc {
+        private final int salaNumber;
+        private final Long id;
+        private final String name;
+        private final String ip;
+        private final String mac;
+
+        /**
+         * @return Key that identifies the PC across all salas
+         */
+        public long getKey() {
+            return key(salaNumber, id);
+        }
+    }
+
+    /**
+     * Immutable set of indexes built from one load of the sala tables.
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(List.of());
+
+        private final List<Pc> all;
+        private final Map<Integer, Map<Long, Pc>> bySala;
+        private final LongHashMap<Pc> byIp;
+        private final LongHashMap<Pc> byMac;
+        private final long[] sortedIps;
+        private final Pc[] pcsBySortedIp;
+
+        private Snapshot(List<Pc> pcs) {
+            Map<Integer, Map<Long, Pc>> salas = new HashMap<>();
+            LongHashMap<Pc> ips = new LongHashMap<>(pcs.size());
+            LongHashMap<Pc> macs = new LongHashMap<>(pcs.size());
+            List<Pc> withIp = new ArrayList<>(pcs.size());
+            List<Pc> sorted = pcs.stream()
+                    .sorted((a, b) -> a.salaNumber != b.salaNumber
+                            ? Integer.compare(a.salaNumber, b.salaNumber)
+                            : Long.compare(a.id, b.id))
+                    .collect(Collectors.toList());
+
+            for (Pc pc : sorted) {
+                salas.computeIfAbsent(pc.salaNumber, sala -> new LinkedHashMap<>()).put(pc.id, pc);
+                long ip = NetAddress.parseIpv4(pc.ip);
+                if (ip != NetAddress.INVALID) {
+                    withIp.add(pc);
+                    if (ips.putIfAbsent(ip, pc) != null) {
+                        log.warn("IP {} duplicada en Sala {} (PC {}) - se usa la primera", pc.ip, pc.salaNumber, pc.id);
+                    }
+                } else if (pc.ip != null && !pc.ip.isBlank()) {
+                    log.warn("IP inválida '{}' en Sala {} (PC {})", pc.ip, pc.salaNumber, pc.id);
+                }
+                long mac = NetAddress.parseMac(pc.mac);
+                if (mac != NetAddress.INVALID) {
+                    macs.putIfAbsent(mac, pc);
+                }
+            }
+
+            withIp.sort(Comparator.comparingLong(pc -> NetAddress.parseIpv4(pc.ip)));
+            this.sortedIps = new long[withIp.size()];
+            this.pcsBySortedIp = withIp.toArray(new Pc[0]);
+            for (int i = 0; i < sortedIps.length; i++) {
+                sortedIps[i] = NetAddress.parseIpv4(pcsBySortedIp[i].ip);
+            }
+
+            salas.replaceAll((sala, byId) -> Collections.unmodifiableMap(byId));
+            this.all = List.copyOf(sorted);
+            this.bySala = Map.copyOf(salas);
+            this.byIp = ips;
+            this.byMac = macs;
+        }
+
+        private Map<Integer, Integer> countsBySala() {
+            Map<Integer, Integer> counts = new LinkedHashMap<>();
+            bySala.keySet().stream().sorted().forEach(sala -> counts.put(sala, bySala.get(sala).size()));
+            return counts;
+        }
+    }
+}
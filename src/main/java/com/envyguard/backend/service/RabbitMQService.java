@@ -2,12 +2,20 @@ package com.envyguard.backend.service;
 
 import com.envyguard.backend.config.RabbitMQConfig;
 import com.envyguard.backend.dto.AgentCommandMessage;
+import com.envyguard.backend.entity.CommandOutbox;
 import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 /**
  * Service for sending messages to RabbitMQ.
  * Sends messages in the format expected by C# agents.
@@ -18,6 +26,11 @@ import org.springframework.stereotype.Service;
 @ConditionalOnProperty(name = "spring.rabbitmq.enabled", havingValue = "true", matchIfMissing = false)
 public class RabbitMQService {
 
+    /**
+     * Maximum time to wait for the broker to confirm a batch of messages.
+     */
+    private static final long CONFIRM_TIMEOUT_MS = 10000;
+
     private final RabbitTemplate rabbitTemplate;
 
     /**
@@ -42,4 +55,42 @@ public class RabbitMQService {
             throw new RuntimeException("Failed to send command to RabbitMQ", e);
         }
     }
+
+    /**
+     * Sends a batch of pre-serialized command messages on a single channel and
+     * waits for the broker to confirm all of them (requires
+     * publisher-confirm-type=simple). Used by the command outbox relay.
+     *
+     * The command ID travels as the AMQP correlation ID as well as inside the
+     * JSON envelope, and the lane priority of the entry as the message priority.
+     *
+     * @param entries Outbox entries with JSON payloads in agent format
+     * @throws RuntimeException If any message is nacked or the confirms time out
+     */
+    public void sendOutboxEntries(List<CommandOutbox> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (CommandOutbox entry : entries) {
+                    Message message = MessageBuilder.withBody(entry.getPayload().getBytes(StandardCharsets.UTF_8))
+                            .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                            .setContentEncoding(StandardCharsets.UTF_8.name())
+                            .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                            .setPriority(entry.getPriority())
+                            .setCorrelationId(String.valueOf(entry.getCommandId()))
+                            .setMessageId("command-" + entry.getCommandId())
+                            .build();
+                    operations.send(RabbitMQConfig.PC_COMMANDS_QUEUE, message);
+                }
+                operations.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+                return null;
+            });
+            log.debug("Batch of {} commands sent to RabbitMQ and confirmed", entries.size());
+        } catch (Exception e) {
+            log.error("Error sending command batch to RabbitMQ: {}", e.getMessage());
+            throw new RuntimeException("Failed to send command batch to RabbitMQ", e);
+        }
+    }
 }
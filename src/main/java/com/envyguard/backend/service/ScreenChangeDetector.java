@@ -0,0 +1,162 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.util.ScreenFrames;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Suppresses screen frames that barely differ from the last one relayed for
+ * the same PC.
+ *
+ * Frames are compared by their 64-bit difference hash (see
+ * {@link ScreenFrames#differenceHash}), computed by the {@link ScreenThumbnailer}
+ * workers from the image they decode anyway, never on the AMQP listener
+ * thread. A frame whose hash is less than
+ * {@code screens.change.distance-threshold} bits away from the hash of the
+ * last relayed frame is suppressed. Comparing with the last relayed frame,
+ * not the previous one, keeps a slow drift from going unnoticed. A frame is
+ * always relayed if the PC had none relayed for
+ * {@code screens.change.keyframe-ms}, and so are frames without a decodable
+ * image. Frames and bytes relayed and suppressed are counted per PC.
+ *
+ * Only frames offered to subscribers go through the detector, so the last
+ * relayed frame of a PC is the one its watchers last saw. When a session
+ * subscribes to a topic that carries the frames of a PC the next frame of
+ * that PC is relayed whatever its hash, so the new watcher does not wait for
+ * a change or a keyframe.
+ */
+@Component
+public class ScreenChangeDetector {
+
+    // Tamaño mínimo de decodificación: suficiente para los 9x8 bloques del hash
+    static final int HASH_SOURCE_WIDTH = 72;
+    static final int HASH_SOURCE_HEIGHT = 64;
+
+    private final int distanceThreshold;
+    private final long keyframeMs;
+
+    private final Map<Long, PcFrames> pcs = new ConcurrentHashMap<>();
+
+    public ScreenChangeDetector(@Value("${screens.change.distance-threshold:4}") int distanceThreshold,
+                                @Value("${screens.change.keyframe-ms:10000}") long keyframeMs) {
+        if (distanceThreshold < 0 || distanceThreshold > 64) {
+            throw new IllegalArgumentException("screens.change.distance-threshold must be between 0 and 64");
+        }
+        this.distanceThreshold = distanceThreshold;
+        this.keyframeMs = keyframeMs;
+    }
+
+    /**
+     * Decides whether a frame of a PC is relayed and records it in the
+     * counters of the PC.
+     *
+     * @param pc     PC that sent the frame
+     * @param hash   Difference hash of the frame, or null if it has no
+     *               decodable image
+     * @param length Size of the frame body
+     * @return Whether the frame changed enough (or is a keyframe) to be relayed
+     */
+    public boolean shouldRelay(PcDirectory.Pc pc, Long hash, int length) {
+        return pcs.computeIfAbsent(pc.getKey(), key -> new PcFrames(pc))
+                .record(hash, length, System.currentTimeMillis(), this);
+    }
+
+    /**
+     * @param hash     Difference hash of a frame
+     * @param previous Difference hash of an earlier frame
+     * @return Whether both frames are too close to count as a screen change
+     */
+    public boolean isSimilar(long hash, long previous) {
+        return Long.bitCount(hash ^ previous) < distanceThreshold;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String destination = SimpMessageHeaderAccessor.wrap(event.getMessage()).getDestination();
+        if (destination != null) {
+            forceKeyframe(destination);
+        }
+    }
+
+    /**
+     * Makes the next frame of every PC published on a destination be relayed
+     * unchecked.
+     *
+     * @param subscribed Destination (or Ant pattern) just subscribed to
+     */
+    void forceKeyframe(String subscribed) {
+        boolean allScreens = ScreenSubscriptionRegistry.covers(subscribed, SpyService.SCREENS_DESTINATION);
+        pcs.values().forEach(frames -> {
+            if (allScreens || ScreenSubscriptionRegistry.covers(subscribed,
+                    SpyService.screensDestination(frames.pc.getSalaNumber(), frames.pc.getId()))) {
+                frames.forceKeyframe();
+            }
+        });
+    }
+
+    /**
+     * @return Frames and bytes relayed and suppressed of each PC, by
+     *         "sala/pcId"
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        pcs.values().forEach(frames -> snapshot.put(frames.pc.getSalaNumber() + "/" + frames.pc.getId(), frames.stats()));
+        return snapshot;
+    }
+
+    /**
+     * Last relayed frame and counters of one PC.
+     */
+    private static final class PcFrames {
+        private final PcDirectory.Pc pc;
+
+        // Protegidos por this
+        private Long lastHash;
+        private long lastRelayedAt;
+        private long relayed;
+        private long suppressed;
+        private long bytesRelayed;
+        private long bytesSaved;
+
+        private PcFrames(PcDirectory.Pc pc) {
+            this.pc = pc;
+        }
+
+        private synchronized boolean record(Long hash, int length, long now, ScreenChangeDetector detector) {
+            boolean unchanged = hash != null && lastHash != null
+                    && detector.isSimilar(hash, lastHash)
+                    && now - lastRelayedAt < detector.keyframeMs;
+            if (unchanged) {
+                suppressed++;
+                bytesSaved += length;
+                return false;
+            }
+            lastHash = hash;
+            lastRelayedAt = now;
+            relayed++;
+            bytesRelayed += length;
+            return true;
+        }
+
+        private synchronized void forceKeyframe() {
+            lastHash = null;
+        }
+
+        private synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("relayed", relayed);
+            stats.put("suppressed", suppressed);
+            stats.put("bytesRelayed", bytesRelayed);
+            stats.put("bytesSaved", bytesSaved);
+            return stats;
+        }
+    }
+}
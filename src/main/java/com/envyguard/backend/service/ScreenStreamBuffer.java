@@ -0,0 +1,289 @@
+package com.envyguard.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latest-frame-wins delivery of screen frames to each WebSocket session.
+ *
+ * Screen frames bypass the simple broker, which would queue every frame of a
+ * slow viewer behind the previous ones. Each session has one slot per PC
+ * whose frames it watches: a newer frame overwrites the unsent one, and the
+ * overwritten frame is counted as dropped for the session. A scheduled tick
+ * ({@code screens.stream.tick-ms}) sends the pending slots to the client
+ * outbound channel, at most {@code screens.stream.max-fps} frames per second
+ * of each PC, and only when the previous frames of the session were already
+ * handed to its WebSocket; a slow viewer sees a slightly stale but current
+ * screen. A session holds at most {@code screens.stream.max-slots-per-session}
+ * slots, so its memory stays bounded by that many frames: a new source evicts
+ * the least recently offered slot. Slots are freed when their subscription is
+ * removed and after {@code screens.stream.slot-idle-ms} without frames, so a
+ * viewer moving between grids does not keep the slots of the previous one.
+ * The stream of a session is dropped on disconnect, and by the next tick once
+ * the {@link ScreenSubscriptionRegistry} no longer knows the session, so a
+ * frame routed just before the disconnect cannot leave it behind.
+ */
+@Component
+@Slf4j
+public class ScreenStreamBuffer implements ExecutorChannelInterceptor {
+
+    // Marca los mensajes propios en el canal de salida para llevar la cuenta de los pendientes
+    private static final String SCREEN_FRAME_HEADER = "screenFrame";
+
+    private final MessageChannel clientOutboundChannel;
+    private final ScreenSubscriptionRegistry subscriptionRegistry;
+    private final long minFrameIntervalMs;
+    private final int maxSlotsPerSession;
+    private final long slotIdleMs;
+
+    private final Map<String, SessionStream> sessions = new ConcurrentHashMap<>();
+
+    public ScreenStreamBuffer(@Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel,
+                              ScreenSubscriptionRegistry subscriptionRegistry,
+                              @Value("${screens.stream.max-fps:5}") int maxFps,
+                              @Value("${screens.stream.max-slots-per-session:64}") int maxSlotsPerSession,
+                              @Value("${screens.stream.slot-idle-ms:30000}") long slotIdleMs) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("screens.stream.max-fps must be positive");
+        }
+        if (maxSlotsPerSession <= 0) {
+            throw new IllegalArgumentException("screens.stream.max-slots-per-session must be positive");
+        }
+        if (slotIdleMs <= 0) {
+            throw new IllegalArgumentException("screens.stream.slot-idle-ms must be positive");
+        }
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.minFrameIntervalMs = 1000L / maxFps;
+        this.maxSlotsPerSession = maxSlotsPerSession;
+        this.slotIdleMs = slotIdleMs;
+        clientOutboundChannel.addInterceptor(this);
+    }
+
+    /**
+     * Stores a frame in the slot of its source in every session watching one
+     * of its destinations.
+     *
+     * @param source        Key of the frame source (e.g. the PC); each
+     *                      session keeps only the newest frame per source
+     * @param destinations  Destinations of the frame, most specific first
+     * @param body          Frame body, shared by all sessions
+     * @param nativeHeaders STOMP headers of the frame
+     * @return Number of sessions the frame was buffered for
+     */
+    public int offer(Object source, List<String> destinations, byte[] body, Map<String, String> nativeHeaders) {
+        Map<String, ScreenSubscriptionRegistry.Subscription> targets = subscriptionRegistry.route(destinations);
+        long now = System.currentTimeMillis();
+        targets.forEach((sessionId, subscription) -> sessions.computeIfAbsent(sessionId, SessionStream::new)
+                .offer(source, new Frame(subscription, body, nativeHeaders), maxSlotsPerSession, now));
+        return targets.size();
+    }
+
+    /**
+     * Sends the pending frames that are due, in each session that has no
+     * frames still waiting to be handed to its WebSocket, and frees the idle
+     * slots and the streams of sessions without screen subscriptions.
+     */
+    @Scheduled(fixedDelayString = "${screens.stream.tick-ms:50}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (SessionStream stream : sessions.values()) {
+            // Un offer concurrente con la desconexión puede haber recreado el stream
+            if (!subscriptionRegistry.hasSession(stream.sessionId)) {
+                sessions.remove(stream.sessionId, stream);
+                continue;
+            }
+            stream.removeIdle(now - slotIdleMs);
+            for (Frame frame : stream.takeDue(now, minFrameIntervalMs)) {
+                if (subscriptionRegistry.isSubscribed(stream.sessionId, frame.subscription.getId())) {
+                    send(stream, frame);
+                }
+            }
+        }
+    }
+
+    private void send(SessionStream stream, Frame frame) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(stream.sessionId);
+        accessor.setSubscriptionId(frame.subscription.getId());
+        accessor.setDestination(frame.subscription.getDestination());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        frame.nativeHeaders.forEach(accessor::setNativeHeader);
+        accessor.setHeader(SCREEN_FRAME_HEADER, Boolean.TRUE);
+
+        stream.inFlight.incrementAndGet();
+        try {
+            // El body se comparte entre sesiones, sin copias
+            if (!clientOutboundChannel.send(MessageBuilder.createMessage(frame.body, accessor.getMessageHeaders()))) {
+                stream.inFlight.decrementAndGet();
+            }
+        } catch (Exception e) {
+            stream.inFlight.decrementAndGet();
+            log.error("Failed to send screen frame to session {}: {}", stream.sessionId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (!message.getHeaders().containsKey(SCREEN_FRAME_HEADER)) {
+            return;
+        }
+        SessionStream stream = sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (stream != null) {
+            stream.inFlight.decrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        SessionStream stream = headers.getSessionId() == null ? null : sessions.get(headers.getSessionId());
+        if (stream != null && headers.getSubscriptionId() != null) {
+            stream.removeSubscription(headers.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionStream stream = sessions.remove(event.getSessionId());
+        if (stream != null) {
+            Map<String, Object> stats = stream.stats();
+            log.debug("Screen stream of session {} closed: {} frames sent, {} dropped",
+                    stream.sessionId, stats.get("sent"), stats.get("dropped"));
+        }
+    }
+
+    /**
+     * @return Frames pending, sent and dropped of each session, by session id
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        sessions.forEach((sessionId, stream) -> snapshot.put(sessionId, stream.stats()));
+        return snapshot;
+    }
+
+    /**
+     * Frame waiting in a slot, with the subscription it is sent on.
+     */
+    private static final class Frame {
+        private final ScreenSubscriptionRegistry.Subscription subscription;
+        private final byte[] body;
+        private final Map<String, String> nativeHeaders;
+
+        private Frame(ScreenSubscriptionRegistry.Subscription subscription, byte[] body,
+                      Map<String, String> nativeHeaders) {
+            this.subscription = subscription;
+            this.body = body;
+            this.nativeHeaders = nativeHeaders;
+        }
+    }
+
+    /**
+     * Slot of one source within a session.
+     */
+    private static final class Slot {
+        private String subscriptionId;
+        private Frame pending;
+        private long lastSentAt;
+        private long lastOfferedAt;
+    }
+
+    /**
+     * Slots and counters of one session.
+     */
+    private static final class SessionStream {
+        private final String sessionId;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        // Protegidos por this; en orden de acceso para desalojar el slot menos reciente
+        private final Map<Object, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+        private long sent;
+        private long dropped;
+        private long evicted;
+
+        private SessionStream(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        private synchronized void offer(Object source, Frame frame, int maxSlots, long now) {
+            Slot slot = slots.get(source);
+            if (slot == null) {
+                if (slots.size() >= maxSlots) {
+                    Iterator<Slot> eldest = slots.values().iterator();
+                    if (eldest.next().pending != null) {
+                        dropped++;
+                    }
+                    eldest.remove();
+                    evicted++;
+                }
+                slot = new Slot();
+                slots.put(source, slot);
+            }
+            if (slot.pending != null) {
+                dropped++;
+            }
+            slot.subscriptionId = frame.subscription.getId();
+            slot.pending = frame;
+            slot.lastOfferedAt = now;
+        }
+
+        private synchronized void removeSubscription(String subscriptionId) {
+            slots.values().removeIf(slot -> subscriptionId.equals(slot.subscriptionId));
+        }
+
+        // Solo slots sin frame pendiente: un frame no enviado nunca se descarta por inactividad
+        private synchronized void removeIdle(long idleBefore) {
+            slots.values().removeIf(slot -> slot.pending == null && slot.lastOfferedAt < idleBefore);
+        }
+
+        // Nada sale mientras la sesión tenga frames sin entregar a su WebSocket
+        private synchronized List<Frame> takeDue(long now, long minIntervalMs) {
+            List<Frame> due = new ArrayList<>();
+            if (inFlight.get() > 0) {
+                return due;
+            }
+            for (Slot slot : slots.values()) {
+                if (slot.pending != null && now - slot.lastSentAt >= minIntervalMs) {
+                    due.add(slot.pending);
+                    slot.pending = null;
+                    slot.lastSentAt = now;
+                }
+            }
+            sent += due.size();
+            return due;
+        }
+
+        private synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("pending", slots.values().stream().filter(slot -> slot.pending != null).count());
+            stats.put("sent", sent);
+            stats.put("dropped", dropped);
+            stats.put("slots", slots.size());
+            stats.put("evicted", evicted);
+            return stats;
+        }
+    }
+}
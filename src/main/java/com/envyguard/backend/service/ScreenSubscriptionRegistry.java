@@ -0,0 +1,152 @@
+package com.envyguard.backend.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the STOMP subscriptions to the screen topics so screen frames are
+ * only relayed to the sessions watching them.
+ *
+ * Subscriptions are kept per session from the session events of the
+ * WebSocket endpoints. Destinations with wildcards (the simple broker matches
+ * them as Ant patterns, e.g. /topic/screens/4/*) are matched the same way
+ * against the destinations of each frame.
+ */
+@Component
+public class ScreenSubscriptionRegistry {
+
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    // Protegido por this: subscriptionId -> destino de cada sesión
+    private final Map<String, Map<String, String>> sessions = new HashMap<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = headers.getDestination();
+        // Los patrones amplios (/topic/**) también pueden cubrir las pantallas
+        if (destination == null
+                || (!destination.startsWith(SpyService.SCREENS_DESTINATION) && !MATCHER.isPattern(destination))
+                || headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        subscribe(headers.getSessionId(), headers.getSubscriptionId(), destination);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (headers.getSessionId() != null && headers.getSubscriptionId() != null) {
+            unsubscribe(headers.getSessionId(), headers.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    synchronized void subscribe(String sessionId, String subscriptionId, String destination) {
+        sessions.computeIfAbsent(sessionId, id -> new HashMap<>()).put(subscriptionId, destination);
+    }
+
+    synchronized void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        if (subscriptions != null && subscriptions.remove(subscriptionId) != null && subscriptions.isEmpty()) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    synchronized void disconnect(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * Finds the sessions that receive a frame published to several
+     * destinations. A session subscribed to more than one of them gets the
+     * frame once, on its subscription to the first one.
+     *
+     * @param destinations Destinations of the frame, most specific first
+     * @return Subscription of each receiving session, by session id (empty if
+     *         nobody watches the frame)
+     */
+    public synchronized Map<String, Subscription> route(List<String> destinations) {
+        Map<String, Subscription> targets = new HashMap<>();
+        sessions.forEach((sessionId, subscriptions) -> {
+            for (String destination : destinations) {
+                String subscriptionId = find(subscriptions, destination);
+                if (subscriptionId != null) {
+                    targets.put(sessionId, new Subscription(subscriptionId, destination));
+                    return;
+                }
+            }
+        });
+        return targets;
+    }
+
+    /**
+     * @param sessionId      WebSocket session id
+     * @param subscriptionId STOMP subscription id within the session
+     * @return Whether the subscription is still active
+     */
+    public synchronized boolean isSubscribed(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        return subscriptions != null && subscriptions.containsKey(subscriptionId);
+    }
+
+    /**
+     * @param sessionId WebSocket session id
+     * @return Whether the session has any active subscription to the screen
+     *         topics
+     */
+    public synchronized boolean hasSession(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    /**
+     * @return Number of active subscriptions to the screen topics
+     */
+    public synchronized int size() {
+        return sessions.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * @param subscribed  Subscribed destination, possibly an Ant pattern
+     * @param destination Destination a frame is published to
+     * @return Whether a subscription to the first destination receives the frame
+     */
+    static boolean covers(String subscribed, String destination) {
+        return subscribed.equals(destination)
+                || (MATCHER.isPattern(subscribed) && MATCHER.match(subscribed, destination));
+    }
+
+    private static String find(Map<String, String> subscriptions, String destination) {
+        for (Map.Entry<String, String> subscription : subscriptions.entrySet()) {
+            if (covers(subscription.getValue(), destination)) {
+                return subscription.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Subscription of a session that receives a frame.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Subscription {
+        private final String id;
+        private final String destination;
+    }
+}
@@ -0,0 +1,325 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.util.ScreenFrames;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoding stage for the screen frames of resolved PCs, including the
+ * thumbnails of the exam grid view.
+ *
+ * Frames are decoded on a bounded worker pool ({@code screens.thumbnail.threads},
+ * {@code screens.thumbnail.queue-capacity}), once per frame: the same image
+ * gives the difference hash checked by the {@link ScreenChangeDetector} and,
+ * when the grid needs it, the thumbnail. A frame for the PC topics its
+ * submitter found watched is handed to the {@link ScreenStreamBuffer} if it
+ * changed; frames nobody watches skip the detector and only refresh the
+ * thumbnail when the screen changed or the cached one is due.
+ * Thumbnails are downsized to fit the grid resolution
+ * ({@code screens.thumbnail.width} x {@code screens.thumbnail.height}),
+ * re-encoded as JPEG, cached and published on the sala topic
+ * ({@code /topic/screens/{sala}}). They are only made while the sala topic is
+ * watched, or when the cached thumbnail of the PC is older than
+ * {@code screens.thumbnail.refresh-ms}.
+ *
+ * Each PC has at most one pending job: frames arriving while it waits replace
+ * the pending frame, so a slow pool only ever decodes the newest screen. If
+ * the pool is full the frame is relayed unchecked and gets no thumbnail.
+ * Frames without a decodable image (see {@link ScreenFrames}) are always
+ * relayed.
+ */
+@Component
+@Slf4j
+public class ScreenThumbnailer {
+
+    public static final String THUMBNAIL_CONTENT_TYPE = "image/jpeg";
+
+    private final ScreenStreamBuffer screenStreamBuffer;
+    private final ScreenSubscriptionRegistry subscriptionRegistry;
+    private final ScreenChangeDetector screenChangeDetector;
+    private final ObjectMapper objectMapper;
+    private final int width;
+    private final int height;
+    private final long refreshMs;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Long, Job> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Thumbnail> latest = new ConcurrentHashMap<>();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public ScreenThumbnailer(ScreenStreamBuffer screenStreamBuffer, ScreenSubscriptionRegistry subscriptionRegistry,
+                             ScreenChangeDetector screenChangeDetector, ObjectMapper objectMapper,
+                             @Value("${screens.thumbnail.width:320}") int width,
+                             @Value("${screens.thumbnail.height:180}") int height,
+                             @Value("${screens.thumbnail.refresh-ms:10000}") long refreshMs,
+                             @Value("${screens.thumbnail.threads:2}") int threads,
+                             @Value("${screens.thumbnail.queue-capacity:64}") int queueCapacity) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("screens.thumbnail.width and height must be positive");
+        }
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("screens.thumbnail.threads and queue-capacity must be positive");
+        }
+        this.screenStreamBuffer = screenStreamBuffer;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.screenChangeDetector = screenChangeDetector;
+        this.objectMapper = objectMapper;
+        this.width = width;
+        this.height = height;
+        this.refreshMs = refreshMs;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("screen-thumbnail-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @param pc PC that sent a frame
+     * @return Whether a thumbnail of the frame is needed: the sala grid is
+     *         watched or the cached thumbnail is due for a refresh
+     */
+    public boolean isNeeded(PcDirectory.Pc pc) {
+        Thumbnail cached = latest.get(pc.getKey());
+        return cached == null || System.currentTimeMillis() - cached.madeAt >= refreshMs
+                || !subscriptionRegistry.route(List.of(SpyService.screensDestination(pc.getSalaNumber()))).isEmpty();
+    }
+
+    // Miniatura en caché de la misma pantalla y sin refresco pendiente
+    private boolean isCurrent(Thumbnail cached, long hash) {
+        return cached != null && System.currentTimeMillis() - cached.madeAt < refreshMs
+                && screenChangeDetector.isSimilar(hash, cached.hash);
+    }
+
+    /**
+     * Queues a frame to be checked for changes and thumbnailed, replacing the
+     * frame of the PC still waiting for a worker, if any.
+     *
+     * @param pc           PC that sent the frame
+     * @param body         Frame body
+     * @param contentType  AMQP content type of the frame (may be null)
+     * @param destinations Watched destinations of the full frame, most
+     *                     specific first (empty if only the thumbnail is needed)
+     * @param headers      STOMP headers of the full frame
+     * @param thumbnail    Whether to make a thumbnail of the frame
+     */
+    public void submit(PcDirectory.Pc pc, byte[] body, String contentType, List<String> destinations,
+                       Map<String, String> headers, boolean thumbnail) {
+        long key = pc.getKey();
+        Job job = new Job(pc, body, contentType, destinations, headers, thumbnail);
+        if (pending.put(key, job) != null) {
+            coalesced.incrementAndGet();
+            return;
+        }
+        try {
+            executor.execute(() -> process(key));
+        } catch (RejectedExecutionException e) {
+            // Sin cupo en el pool: el frame se entrega sin comprobar cambios
+            if (pending.remove(key, job)) {
+                relay(job);
+            }
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param salaNumber Sala number (1-4)
+     * @param pcId       PC ID in the sala table
+     * @return Latest thumbnail of the PC, if any
+     */
+    public Optional<Thumbnail> getLatest(int salaNumber, Long pcId) {
+        return pcId == null ? Optional.empty() : Optional.ofNullable(latest.get(PcDirectory.key(salaNumber, pcId)));
+    }
+
+    /**
+     * @return Thumbnails generated and frames coalesced, rejected (pool full,
+     *         relayed unchecked) or not decodable
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("generated", generated.get());
+        snapshot.put("coalesced", coalesced.get());
+        snapshot.put("rejected", rejected.get());
+        snapshot.put("failed", failed.get());
+        snapshot.put("cached", latest.size());
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void process(long key) {
+        Job job = pending.remove(key);
+        if (job == null) {
+            return;
+        }
+        PcDirectory.Pc pc = job.pc;
+        BufferedImage image = null;
+        try {
+            image = job.thumbnail ? decode(job.body, job.contentType, width, height)
+                    : decode(job.body, job.contentType, ScreenChangeDetector.HASH_SOURCE_WIDTH,
+                            ScreenChangeDetector.HASH_SOURCE_HEIGHT);
+        } catch (Exception e) {
+            log.debug("Could not decode screen frame of PC {}: {}", pc.getName(), e.getMessage());
+        }
+
+        Long hash = image == null ? null : ScreenFrames.differenceHash(image);
+        // Solo los frames que se ofrecen a suscriptores cuentan como entregados
+        if (!job.destinations.isEmpty()) {
+            if (!screenChangeDetector.shouldRelay(pc, hash, job.body.length)) {
+                log.trace("Unchanged screen frame of PC {} suppressed", pc.getName());
+                return;
+            }
+            relay(job);
+        }
+        if (!job.thumbnail) {
+            return;
+        }
+        if (image == null) {
+            failed.incrementAndGet();
+            return;
+        }
+        if (job.destinations.isEmpty() && isCurrent(latest.get(key), hash)) {
+            log.trace("Unchanged thumbnail of PC {} skipped", pc.getName());
+            return;
+        }
+
+        try {
+            byte[] jpeg = encode(image);
+            latest.put(key, new Thumbnail(jpeg, LocalDateTime.now(), System.currentTimeMillis(), hash));
+            generated.incrementAndGet();
+
+            Map<String, String> headers = new LinkedHashMap<>(4);
+            headers.put(SpyService.FRAME_CONTENT_TYPE_HEADER, THUMBNAIL_CONTENT_TYPE);
+            headers.put(SpyService.SALA_HEADER, String.valueOf(pc.getSalaNumber()));
+            headers.put(SpyService.PC_ID_HEADER, String.valueOf(pc.getId()));
+            // Slot propio: la miniatura no pisa el frame completo del mismo PC en la sesión
+            screenStreamBuffer.offer("thumbnail-" + key, List.of(SpyService.screensDestination(pc.getSalaNumber())),
+                    jpeg, headers);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.debug("Could not thumbnail screen frame of PC {}: {}", pc.getName(), e.getMessage());
+        }
+    }
+
+    private void relay(Job job) {
+        if (!job.destinations.isEmpty()) {
+            screenStreamBuffer.offer(job.pc.getKey(), job.destinations, job.body, job.headers);
+        }
+    }
+
+    /**
+     * Decodes a frame and encodes it as a JPEG that fits the grid resolution.
+     *
+     * @param body        Frame body
+     * @param contentType AMQP content type of the frame (may be null)
+     * @return JPEG thumbnail, or null if the frame has no decodable image
+     */
+    byte[] thumbnail(byte[] body, String contentType) throws IOException {
+        BufferedImage source = decode(body, contentType, width, height);
+        return source == null ? null : encode(source);
+    }
+
+    /**
+     * Decodes a frame subsampled down to about the requested size.
+     *
+     * @return Decoded image, or null if the frame has no decodable image
+     */
+    private BufferedImage decode(byte[] body, String contentType, int minWidth, int minHeight) throws IOException {
+        byte[] image = ScreenFrames.imageBytes(objectMapper, body, contentType);
+        return image == null ? null : ScreenFrames.readImage(image, minWidth, minHeight);
+    }
+
+    /**
+     * Encodes an image as a JPEG that fits the grid resolution, keeping the
+     * aspect ratio. Images already smaller are only re-encoded.
+     */
+    private byte[] encode(BufferedImage source) throws IOException {
+        double scale = Math.min(1.0, Math.min((double) width / source.getWidth(), (double) height / source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        // TYPE_INT_RGB: el codificador JPEG no admite canal alfa
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        ImageIO.write(target, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Frame waiting for a worker.
+     */
+    private static final class Job {
+        private final PcDirectory.Pc pc;
+        private final byte[] body;
+        private final String contentType;
+        private final List<String> destinations;
+        private final Map<String, String> headers;
+        private final boolean thumbnail;
+
+        private Job(PcDirectory.Pc pc, byte[] body, String contentType, List<String> destinations,
+                    Map<String, String> headers, boolean thumbnail) {
+            this.pc = pc;
+            this.body = body;
+            this.contentType = contentType;
+            this.destinations = destinations;
+            this.headers = headers;
+            this.thumbnail = thumbnail;
+        }
+    }
+
+    /**
+     * Latest thumbnail of a PC.
+     */
+    @Getter
+    public static final class Thumbnail {
+        private final byte[] jpeg;
+        private final LocalDateTime capturedAt;
+        @Getter(AccessLevel.NONE)
+        private final long madeAt;
+        @Getter(AccessLevel.NONE)
+        private final long hash;
+
+        private Thumbnail(byte[] jpeg, LocalDateTime capturedAt, long madeAt, long hash) {
+            this.jpeg = jpeg;
+            this.capturedAt = capturedAt;
+            this.madeAt = madeAt;
+            this.hash = hash;
+        }
+    }
+}
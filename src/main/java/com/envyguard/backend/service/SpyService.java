@@ -1,48 +1,174 @@
 package com.envyguard.backend.service;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Relays the screen frames published by the monitoring agents (spy.screens)
+ * to WebSocket clients.
+ *
+ * The agent of each frame is resolved to a PC of the {@link PcDirectory} from
+ * its AMQP headers (IP or MAC address, or sala and PC id). Full-resolution
+ * frames go to the PC topic ({@code /topic/screens/{sala}/{pcId}}) and to the
+ * legacy all-screens topic {@value #SCREENS_DESTINATION}; the sala topic
+ * ({@code /topic/screens/{sala}}) carries the grid thumbnails made by the
+ * {@link ScreenThumbnailer}. Frames of unresolved agents only reach the
+ * all-screens topic, in a slot of their own per agent (AMQP app id or pc-id
+ * header); frames that identify no agent at all are never coalesced. Frames
+ * of a PC are only decoded if someone watches one of its topics or its
+ * thumbnail is needed; the {@link ScreenThumbnailer} workers then drop the
+ * frames that barely changed since the last relayed one (see
+ * {@link ScreenChangeDetector}). Frames are handed to the
+ * {@link ScreenStreamBuffer}, which delivers them only to the sessions
+ * subscribed to one of those destinations (see
+ * {@link ScreenSubscriptionRegistry}), newest frame first and within each
+ * session's frame rate; a frame nobody watches costs nothing.
+ *
+ * The AMQP body is forwarded as the very same byte array, without decoding it
+ * to a String or re-encoding it: the STOMP frame is sent as
+ * application/octet-stream, which clients of the native WebSocket endpoint
+ * (/ws-screens) receive as a binary frame. The original content type, the
+ * sala and the PC id travel as the STOMP headers
+ * {@value #FRAME_CONTENT_TYPE_HEADER}, {@value #SALA_HEADER} and
+ * {@value #PC_ID_HEADER}. SockJS clients (/ws-spy) still get the body as text,
+ * which is unchanged for the JSON frames the agents send today.
+ */
 @Service
+@RequiredArgsConstructor
+@Slf4j
 public class SpyService {
 
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    public static final String SCREENS_DESTINATION = "/topic/screens";
+    public static final String PC_ID_HEADER = "pc-id";
+    public static final String SALA_HEADER = "sala";
+    public static final String FRAME_CONTENT_TYPE_HEADER = "frame-content-type";
+
+    private final ScreenStreamBuffer screenStreamBuffer;
+    private final ScreenThumbnailer screenThumbnailer;
+    private final ScreenSubscriptionRegistry subscriptionRegistry;
+    private final PcDirectory pcDirectory;
 
     // Cola durable que persiste después de reiniciar, binding a amq.topic con key
     // spy.screens
     @RabbitListener(bindings = @QueueBinding(value = @Queue(value = "java_spy_bridge", durable = "true", autoDelete = "false"), exchange = @Exchange(value = "amq.topic", type = "topic", ignoreDeclarationExceptions = "true", durable = "true"), key = "spy.screens"))
-    public void receiveAndBroadcast(org.springframework.amqp.core.Message message) {
+    public void receiveAndBroadcast(Message message) {
         try {
-            // Validar que el mensaje no sea nulo
-            if (message == null || message.getBody() == null) {
-                System.out.println("⚠️ MENSAJE NULO RECIBIDO - IGNORADO");
+            if (message == null || message.getBody() == null || message.getBody().length == 0) {
+                log.warn("Received empty screen frame - ignoring");
                 return;
             }
 
-            String jsonMessage = new String(message.getBody());
+            byte[] body = message.getBody();
+            MessageProperties properties = message.getMessageProperties();
+            PcDirectory.Pc pc = resolve(properties).orElse(null);
+            Map<String, String> headers = frameHeaders(properties, pc);
+            if (pc == null) {
+                int sessions = screenStreamBuffer.offer(unresolvedSource(properties, headers),
+                        List.of(SCREENS_DESTINATION), body, headers);
+                log.trace("Screen frame ({} bytes) buffered for {} sessions", body.length, sessions);
+                return;
+            }
 
-            // Validar que el mensaje no esté vacío
-            if (jsonMessage == null || jsonMessage.trim().isEmpty()) {
-                System.out.println("⚠️ MENSAJE VACÍO RECIBIDO - IGNORADO");
+            List<String> destinations = List.of(screensDestination(pc.getSalaNumber(), pc.getId()), SCREENS_DESTINATION);
+            boolean watched = !subscriptionRegistry.route(destinations).isEmpty();
+            boolean thumbnail = screenThumbnailer.isNeeded(pc);
+            if (!watched && !thumbnail) {
+                // Nadie mira el PC: ni se decodifica ni se calcula el hash
                 return;
             }
+            screenThumbnailer.submit(pc, body, properties.getContentType(), watched ? destinations : List.of(),
+                    headers, thumbnail);
+        } catch (Exception e) {
+            log.error("Error relaying screen frame: {}", e.getMessage());
+            // NO relanzar la excepción para evitar bucles infinitos
+        }
+    }
 
-            // IMPRIMIR EN CONSOLA PARA VERIFICAR
-            System.out.println("🟢 JAVA RECIBIÓ MENSAJE (Longitud: " + jsonMessage.length() + ")");
+    /**
+     * @param salaNumber Sala number (1-4)
+     * @return Thumbnail (grid) topic of the sala
+     */
+    public static String screensDestination(int salaNumber) {
+        return SCREENS_DESTINATION + "/" + salaNumber;
+    }
 
-            // Reenviar a React
-            messagingTemplate.convertAndSend("/topic/screens", jsonMessage);
+    /**
+     * @param salaNumber Sala number (1-4)
+     * @param pcId       PC ID in the sala table
+     * @return Screen topic of the PC
+     */
+    public static String screensDestination(int salaNumber, long pcId) {
+        return screensDestination(salaNumber) + "/" + pcId;
+    }
 
-        } catch (Exception e) {
-            // Capturar cualquier error y evitar que se propague
-            System.err.println("❌ ERROR AL PROCESAR MENSAJE: " + e.getMessage());
-            // NO relanzar la excepción para evitar bucles infinitos
+    // Mismo orden que el listener de estado: IP, MAC y por último sala + id
+    private Optional<PcDirectory.Pc> resolve(MessageProperties properties) {
+        if (properties == null) {
+            return Optional.empty();
+        }
+        Object ip = header(properties, "ip-address", "IpAddress", "ipAddress");
+        Optional<PcDirectory.Pc> pc = ip == null ? Optional.empty() : pcDirectory.findByIp(ip.toString());
+        Object mac = header(properties, "mac-address", "MacAddress", "macAddress");
+        if (pc.isEmpty() && mac != null) {
+            pc = pcDirectory.findByMac(mac.toString());
+        }
+        Object sala = header(properties, SALA_HEADER, "Sala", "SalaNumber");
+        Object pcId = header(properties, PC_ID_HEADER, "pcId", "PcId");
+        if (pc.isEmpty() && sala != null && pcId != null) {
+            try {
+                pc = pcDirectory.find(Integer.parseInt(sala.toString()), Long.parseLong(pcId.toString()));
+            } catch (NumberFormatException e) {
+                log.debug("Invalid sala/pc-id headers on screen frame: {}/{}", sala, pcId);
+            }
+        }
+        return pc;
+    }
+
+    // Slot por agente: un slot común mezclaría los frames de todos los agentes sin resolver
+    private static Object unresolvedSource(MessageProperties properties, Map<String, String> headers) {
+        if (properties != null && properties.getAppId() != null) {
+            return "app-" + properties.getAppId();
+        }
+        String pcId = headers.get(PC_ID_HEADER);
+        return pcId != null ? "pc-" + pcId : new Object();
+    }
+
+    private static Map<String, String> frameHeaders(MessageProperties properties, PcDirectory.Pc pc) {
+        Map<String, String> headers = new LinkedHashMap<>(4);
+        if (properties != null && properties.getContentType() != null) {
+            headers.put(FRAME_CONTENT_TYPE_HEADER, properties.getContentType());
+        }
+        if (pc != null) {
+            headers.put(SALA_HEADER, String.valueOf(pc.getSalaNumber()));
+            headers.put(PC_ID_HEADER, String.valueOf(pc.getId()));
+        } else if (properties != null) {
+            Object pcId = header(properties, PC_ID_HEADER, "pcId", "PcId");
+            if (pcId != null) {
+                headers.put(PC_ID_HEADER, pcId.toString());
+            }
+        }
+        return headers;
+    }
+
+    private static Object header(MessageProperties properties, String... names) {
+        for (String name : names) {
+            Object value = properties.getHeader(name);
+            if (value != null) {
+                return value;
+            }
         }
+        return null;
     }
-}
\ No newline at end of file
+}
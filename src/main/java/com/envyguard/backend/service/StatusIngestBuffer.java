@@ -0,0 +1,139 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Computer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Backpressure stage between the pc_status_updates consumers and the
+ * {@link ComputerStatusService} state store.
+ *
+ * Updates are kept in a bounded buffer with one slot per PC where the latest
+ * value wins: while the state store is busy, newer updates of a PC overwrite
+ * the pending one instead of queuing behind it. Consumers drain the buffer
+ * cooperatively: whichever consumer thread gets the drain lock applies every
+ * pending slot, the others only fill slots and return to the broker.
+ *
+ * Each PC also has a token bucket ({@code status.ingest.rate-per-second},
+ * {@code status.ingest.burst}); redundant updates of an agent that exceeds it
+ * are dropped before reaching the buffer. Status changes are never dropped by
+ * the rate limit.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatusIngestBuffer {
+
+    private final ComputerStatusService computerStatusService;
+    private final StatusPipelineMetrics metrics;
+
+    @Value("${status.ingest.rate-per-second:1}")
+    private double ratePerSecond;
+
+    @Value("${status.ingest.burst:5}")
+    private int burst;
+
+    @Value("${status.ingest.buffer-capacity:10000}")
+    private int capacity;
+
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final Map<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    /**
+     * Offers a status update and drains the buffer if no other consumer is
+     * already doing it.
+     *
+     * @param pc     PC resolved from the directory
+     * @param status Reported status
+     */
+    public void offer(PcDirectory.Pc pc, Computer.ComputerStatus status) {
+        long key = pc.getKey();
+        if (!buckets.computeIfAbsent(key, k -> new TokenBucket(burst)).tryAcquire(ratePerSecond, burst)
+                && !changesStatus(pc, status)) {
+            metrics.increment(StatusPipelineMetrics.Stage.RATE_LIMITED);
+            return;
+        }
+        if (slots.size() >= capacity && !slots.containsKey(key)) {
+            metrics.increment(StatusPipelineMetrics.Stage.INGEST_DROPPED);
+            return;
+        }
+        if (slots.put(key, new Slot(pc, status)) != null) {
+            metrics.increment(StatusPipelineMetrics.Stage.INGEST_COALESCED);
+        }
+        drain();
+    }
+
+    /**
+     * @return Number of PCs with a pending update
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    // Se vuelve a comprobar tras soltar el lock: un slot añadido mientras otro
+    // hilo drenaba no queda pendiente hasta el siguiente mensaje
+    private void drain() {
+        while (!slots.isEmpty() && drainLock.tryLock()) {
+            try {
+                for (Slot slot : slots.values()) {
+                    if (slots.remove(slot.pc.getKey(), slot)) {
+                        computerStatusService.apply(slot.pc, slot.status);
+                    }
+                }
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    private boolean changesStatus(PcDirectory.Pc pc, Computer.ComputerStatus status) {
+        Slot pending = slots.get(pc.getKey());
+        if (pending != null) {
+            return pending.status != status;
+        }
+        return computerStatusService.getState(pc.getSalaNumber(), pc.getId())
+                .map(state -> state.getStatus() != status)
+                .orElse(true);
+    }
+
+    /**
+     * Pending update of one PC.
+     */
+    private static final class Slot {
+        private final PcDirectory.Pc pc;
+        private final Computer.ComputerStatus status;
+
+        private Slot(PcDirectory.Pc pc, Computer.ComputerStatus status) {
+            this.pc = pc;
+            this.status = status;
+        }
+    }
+
+    /**
+     * Token bucket of one agent.
+     */
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        private TokenBucket(int burst) {
+            this.tokens = burst;
+        }
+
+        private synchronized boolean tryAcquire(double ratePerSecond, int burst) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * ratePerSecond);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
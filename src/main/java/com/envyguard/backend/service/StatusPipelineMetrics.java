@@ -0,0 +1,103 @@
+package com.envyguard.backend.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage counters of the PC status pipeline (ingest, state store,
+ * persistence, WebSocket fan-out). Rates are sampled every
+ * {@value #SAMPLE_INTERVAL_MS} ms.
+ */
+@Component
+public class StatusPipelineMetrics {
+
+    private static final long SAMPLE_INTERVAL_MS = 10000;
+
+    /**
+     * Pipeline stages.
+     */
+    public enum Stage {
+        /** Raw messages taken from pc_status_updates. */
+        RECEIVED,
+        /** Messages decoded (either payload format). */
+        DECODED,
+        /** Messages that could not be decoded. */
+        DECODE_FAILED,
+        /** Decoded updates whose IP/MAC is not in the PC directory. */
+        UNRESOLVED,
+        /** Redundant updates dropped by the per-agent rate limit. */
+        RATE_LIMITED,
+        /** Updates that replaced a pending update of the same PC in the ingest buffer. */
+        INGEST_COALESCED,
+        /** Updates dropped because the ingest buffer was full. */
+        INGEST_DROPPED,
+        /** Updates applied to the in-memory state store. */
+        APPLIED,
+        /** PCs turned OFFLINE because they missed their heartbeat deadline. */
+        HEARTBEAT_MISSED,
+        /** Heartbeats absorbed by the write-behind buffer (no immediate write). */
+        DEFERRED,
+        /** Status rows written to the database. */
+        PERSISTED,
+        /** Database writes that failed. */
+        PERSIST_FAILED,
+        /** Changes merged into a pending WebSocket frame of the same PC. */
+        COALESCED,
+        /** WebSocket messages sent. */
+        BROADCAST
+    }
+
+    private final Map<Stage, LongAdder> counters = new EnumMap<>(Stage.class);
+    private final Map<Stage, Long> lastSample = new EnumMap<>(Stage.class);
+    private volatile Map<Stage, Double> ratesPerSecond = new EnumMap<>(Stage.class);
+
+    public StatusPipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            counters.put(stage, new LongAdder());
+            lastSample.put(stage, 0L);
+        }
+    }
+
+    public void increment(Stage stage) {
+        counters.get(stage).increment();
+    }
+
+    public void add(Stage stage, long amount) {
+        counters.get(stage).add(amount);
+    }
+
+    public long count(Stage stage) {
+        return counters.get(stage).sum();
+    }
+
+    @Scheduled(fixedRate = SAMPLE_INTERVAL_MS)
+    public void sampleRates() {
+        Map<Stage, Double> rates = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            long total = counters.get(stage).sum();
+            rates.put(stage, (total - lastSample.get(stage)) * 1000.0 / SAMPLE_INTERVAL_MS);
+            lastSample.put(stage, total);
+        }
+        ratesPerSecond = rates;
+    }
+
+    /**
+     * @return Total count and recent rate (per second) of every stage
+     */
+    public Map<String, Object> snapshot() {
+        Map<Stage, Double> rates = ratesPerSecond;
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("total", counters.get(stage).sum());
+            values.put("perSecond", rates.getOrDefault(stage, 0.0));
+            stages.put(stage.name(), values);
+        }
+        return stages;
+    }
+}
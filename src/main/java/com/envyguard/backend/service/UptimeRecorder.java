@@ -0,0 +1,195 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.repository.UptimeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the availability history of the PCs from the status transitions of
+ * the state store.
+ *
+ * Each PC has one open run (status and start time) in memory; heartbeats
+ * that keep the status do not touch it, so the history is run-length
+ * compacted by construction. A transition closes the run, which is appended
+ * to pc_status_intervals. Time spent in each run is also accumulated per PC
+ * and day, including the elapsed part of the still open runs, and added to
+ * the pc_uptime_daily rollups. Writes are asynchronous: a scheduled flush
+ * ({@code uptime.flush-ms}) writes everything accumulated in one short
+ * transaction, so the status pipeline never waits for the database. On
+ * shutdown the open runs are closed at the current time and flushed, so a
+ * restart does not leave gaps in pc_status_intervals.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UptimeRecorder {
+
+    private final UptimeRepository uptimeRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Protegidos por this: solo se tocan en transiciones y en el flush
+    private final Map<Long, Run> runs = new HashMap<>();
+    private final List<UptimeRepository.StatusInterval> closed = new ArrayList<>();
+    private final Map<LocalDate, Map<Long, DayTotals>> daily = new HashMap<>();
+
+    /**
+     * Records the status of a PC from a given time on. Does nothing if the PC
+     * already has an open run with that status.
+     *
+     * @param pc     PC
+     * @param status New status
+     * @param at     Time of the transition
+     */
+    public synchronized void transition(PcDirectory.Pc pc, Computer.ComputerStatus status, LocalDateTime at) {
+        LocalDateTime start = at.truncatedTo(ChronoUnit.SECONDS);
+        Run run = runs.get(pc.getKey());
+        if (run != null) {
+            if (run.status == status) {
+                return;
+            }
+            // El tiempo ya contabilizado no se reescribe
+            if (start.isBefore(run.accountedUntil)) {
+                start = run.accountedUntil;
+            }
+            account(run, start);
+            closed.add(new UptimeRepository.StatusInterval(pc.getSalaNumber(), pc.getId(), run.status,
+                    run.startedAt, start));
+        }
+        runs.put(pc.getKey(), new Run(pc, status, start));
+    }
+
+    /**
+     * Writes the closed runs and the time accumulated per PC and day,
+     * including the elapsed part of the open runs. On failure everything is
+     * kept for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${uptime.flush-ms:60000}")
+    public void flush() {
+        List<UptimeRepository.StatusInterval> intervals;
+        List<UptimeRepository.DailySeconds> increments = new ArrayList<>();
+        synchronized (this) {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+            runs.values().forEach(run -> account(run, now));
+            if (closed.isEmpty() && daily.isEmpty()) {
+                return;
+            }
+            intervals = new ArrayList<>(closed);
+            closed.clear();
+            daily.forEach((day, byPc) -> byPc.values().forEach(totals -> increments.add(
+                    new UptimeRepository.DailySeconds(day, totals.salaNumber, totals.pcId,
+                            totals.onlineSeconds, totals.trackedSeconds))));
+            daily.clear();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                uptimeRepository.insertIntervals(intervals);
+                uptimeRepository.addDailySeconds(increments);
+            });
+            log.debug("Uptime history: {} intervals, {} daily rollups written", intervals.size(), increments.size());
+        } catch (Exception e) {
+            requeue(intervals, increments);
+            log.warn("Could not write uptime history: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Closes every open run at the current time and writes the history.
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+            for (Run run : runs.values()) {
+                account(run, now);
+                if (run.startedAt.isBefore(now)) {
+                    closed.add(new UptimeRepository.StatusInterval(run.pc.getSalaNumber(), run.pc.getId(),
+                            run.status, run.startedAt, now));
+                }
+            }
+            runs.clear();
+        }
+        flush();
+    }
+
+    private synchronized void requeue(List<UptimeRepository.StatusInterval> intervals,
+                                      List<UptimeRepository.DailySeconds> increments) {
+        closed.addAll(0, intervals);
+        for (UptimeRepository.DailySeconds increment : increments) {
+            DayTotals totals = daily.computeIfAbsent(increment.getDay(), day -> new HashMap<>())
+                    .computeIfAbsent(PcDirectory.key(increment.getSalaNumber(), increment.getPcId()),
+                            key -> new DayTotals(increment.getSalaNumber(), increment.getPcId()));
+            totals.onlineSeconds += increment.getOnlineSeconds();
+            totals.trackedSeconds += increment.getTrackedSeconds();
+        }
+    }
+
+    // Reparte el tiempo [accountedUntil, until) de la racha entre los días que cruza
+    private void account(Run run, LocalDateTime until) {
+        boolean known = run.status != Computer.ComputerStatus.UNKNOWN;
+        LocalDateTime from = run.accountedUntil;
+        while (known && from.isBefore(until)) {
+            LocalDate day = from.toLocalDate();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            LocalDateTime end = until.isBefore(dayEnd) ? until : dayEnd;
+            long seconds = Duration.between(from, end).getSeconds();
+
+            DayTotals totals = daily.computeIfAbsent(day, d -> new HashMap<>())
+                    .computeIfAbsent(run.pc.getKey(), key -> new DayTotals(run.pc.getSalaNumber(), run.pc.getId()));
+            totals.trackedSeconds += seconds;
+            if (run.status == Computer.ComputerStatus.ONLINE) {
+                totals.onlineSeconds += seconds;
+            }
+            from = end;
+        }
+        if (until.isAfter(run.accountedUntil)) {
+            run.accountedUntil = until;
+        }
+    }
+
+    /**
+     * Open run of one status of a PC.
+     */
+    private static final class Run {
+        private final PcDirectory.Pc pc;
+        private final Computer.ComputerStatus status;
+        private final LocalDateTime startedAt;
+        private LocalDateTime accountedUntil;
+
+        private Run(PcDirectory.Pc pc, Computer.ComputerStatus status, LocalDateTime startedAt) {
+            this.pc = pc;
+            this.status = status;
+            this.startedAt = startedAt;
+            this.accountedUntil = startedAt;
+        }
+    }
+
+    /**
+     * Seconds accumulated for one PC and day since the last flush.
+     */
+    private static final class DayTotals {
+        private final int salaNumber;
+        private final Long pcId;
+        private long onlineSeconds;
+        private long trackedSeconds;
+
+        private DayTotals(int salaNumber, Long pcId) {
+            this.salaNumber = salaNumber;
+            this.pcId = pcId;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.envyguard.backend.util;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +13,13 @@ import java.util.Map;
 public class ActionMapper {
 
     private static final Map<String, String> ACTION_MAP = new HashMap<>();
+    private static final Map<String, Duration> TIMEOUT_MAP = new HashMap<>();
+    private static final Map<String, CommandLane> LANE_MAP = new HashMap<>();
+
+    /**
+     * Deadline for actions without a specific timeout.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(5);
 
     static {
         // Acciones de control de energía
@@ -35,6 +43,31 @@ public class ActionMapper {
         ACTION_MAP.put("LOCK_SESSION", "lock_session");
         ACTION_MAP.put("DISABLE_INTERNET", "disable_internet");
         ACTION_MAP.put("ENABLE_INTERNET", "enable_internet");
+
+        // Tiempo máximo de espera de la respuesta del agente por acción
+        TIMEOUT_MAP.put("SHUTDOWN", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("REBOOT", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("WAKE_ON_LAN", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("LOCK_SESSION", Duration.ofSeconds(30));
+        TIMEOUT_MAP.put("TEST", Duration.ofSeconds(30));
+        TIMEOUT_MAP.put("BLOCK_WEBSITE", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("BLOCK_SITES", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("UNBLOCK_WEBSITE", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("UNBLOCK_SITES", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("DISABLE_INTERNET", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("ENABLE_INTERNET", Duration.ofSeconds(60));
+        TIMEOUT_MAP.put("FORMAT", Duration.ofMinutes(15));
+        TIMEOUT_MAP.put("INSTALL_APP", Duration.ofMinutes(30));
+        TIMEOUT_MAP.put("INSTALL_SNAP", Duration.ofMinutes(30));
+
+        // Carril de despacho: las acciones urgentes adelantan a las instalaciones masivas
+        LANE_MAP.put("LOCK_SESSION", CommandLane.URGENT);
+        LANE_MAP.put("SHUTDOWN", CommandLane.URGENT);
+        LANE_MAP.put("DISABLE_INTERNET", CommandLane.URGENT);
+        LANE_MAP.put("ENABLE_INTERNET", CommandLane.URGENT);
+        LANE_MAP.put("INSTALL_APP", CommandLane.BULK);
+        LANE_MAP.put("INSTALL_SNAP", CommandLane.BULK);
+        LANE_MAP.put("FORMAT", CommandLane.BULK);
     }
 
     /**
@@ -67,4 +100,31 @@ public class ActionMapper {
     public static boolean isValidAction(String backendAction) {
         return backendAction != null && ACTION_MAP.containsKey(backendAction.toUpperCase());
     }
+
+    /**
+     * Gets how long the backend waits for the agent to report the result of an
+     * action before marking the command as TIMED_OUT.
+     *
+     * @param backendAction Action name from backend (e.g., "SHUTDOWN")
+     * @return Timeout for the action, or {@link #DEFAULT_TIMEOUT} if unknown
+     */
+    public static Duration timeoutFor(String backendAction) {
+        if (backendAction == null) {
+            return DEFAULT_TIMEOUT;
+        }
+        return TIMEOUT_MAP.getOrDefault(backendAction.toUpperCase(), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Gets the dispatch lane of an action.
+     *
+     * @param backendAction Action name from backend (e.g., "LOCK_SESSION")
+     * @return Lane of the action, or {@link CommandLane#NORMAL} if not classified
+     */
+    public static CommandLane laneFor(String backendAction) {
+        if (backendAction == null) {
+            return CommandLane.NORMAL;
+        }
+        return LANE_MAP.getOrDefault(backendAction.toUpperCase(), CommandLane.NORMAL);
+    }
 }
@@ -0,0 +1,49 @@
+package com.envyguard.backend.util;
+
+/**
+ * Dispatch lane of a command. Each lane maps to an AMQP message priority on
+ * the pc_commands queue, so urgent commands overtake a backlog of bulk ones.
+ */
+public enum CommandLane {
+
+    /**
+     * Exam-critical actions (lock, shutdown, internet toggle).
+     */
+    URGENT(9),
+
+    /**
+     * Regular interactive actions.
+     */
+    NORMAL(5),
+
+    /**
+     * Long-running rollouts (installs, format).
+     */
+    BULK(1);
+
+    private final int priority;
+
+    CommandLane(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return AMQP message priority of the lane (0-9)
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @param priority Message priority
+     * @return Lane with that priority, or {@link #NORMAL} if none matches
+     */
+    public static CommandLane fromPriority(int priority) {
+        for (CommandLane lane : values()) {
+            if (lane.priority == priority) {
+                return lane;
+            }
+        }
+        return NORMAL;
+    }
+}
@@ -0,0 +1,131 @@
+package com.envyguard.backend.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel for tracking large numbers of deadlines cheaply.
+ *
+ * Items are hashed into a fixed ring of buckets by their deadline tick, so
+ * scheduling is O(1) and each {@link #advance(long)} call only visits the
+ * buckets whose ticks elapsed, no matter how many items are pending.
+ *
+ * Any thread may call {@link #schedule(Object, long)}; new items go through a
+ * lock-free queue and are moved into the buckets by the thread calling
+ * {@link #advance(long)}, which must be a single thread (e.g. a scheduled task).
+ * Cancellation is lazy: callers re-check expired items against their own state.
+ *
+ * @param <T> Type of the scheduled items
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int mask;
+    private final Queue<Entry<T>>[] buckets;
+    private final Queue<Entry<T>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private long currentTick;
+
+    /**
+     * @param tickMillis  Resolution of the wheel in milliseconds
+     * @param wheelSize   Number of buckets (rounded up to a power of two)
+     * @param startMillis Time origin of the wheel (usually now)
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Schedules an item to expire at the given time. Deadlines in the past
+     * expire on the next tick.
+     *
+     * @param item           Item to schedule
+     * @param deadlineMillis Expiry time in epoch milliseconds
+     */
+    public void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(0, (deadlineMillis - startMillis + tickMillis - 1) / tickMillis);
+        pending.add(new Entry<>(item, tick));
+        size.incrementAndGet();
+    }
+
+    /**
+     * Advances the wheel up to the given time and returns every item whose
+     * deadline has passed.
+     *
+     * @param nowMillis Current time in epoch milliseconds
+     * @return Expired items (empty if none)
+     */
+    public List<T> advance(long nowMillis) {
+        transferPending();
+
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        if (targetTick <= currentTick) {
+            return List.of();
+        }
+
+        List<T> expired = new ArrayList<>();
+        long steps = Math.min(targetTick - currentTick, buckets.length);
+        for (long i = 1; i <= steps; i++) {
+            Queue<Entry<T>> bucket = buckets[(int) ((currentTick + i) & mask)];
+            Iterator<Entry<T>> iterator = bucket.iterator();
+            while (iterator.hasNext()) {
+                Entry<T> entry = iterator.next();
+                if (entry.tick <= targetTick) {
+                    iterator.remove();
+                    expired.add(entry.item);
+                }
+            }
+        }
+        currentTick = targetTick;
+        size.addAndGet(-expired.size());
+        return expired;
+    }
+
+    /**
+     * @return Number of scheduled items that have not expired yet
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void transferPending() {
+        Entry<T> entry;
+        while ((entry = pending.poll()) != null) {
+            if (entry.tick <= currentTick) {
+                entry = new Entry<>(entry.item, currentTick + 1);
+            }
+            buckets[(int) (entry.tick & mask)].add(entry);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long tick;
+
+        private Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
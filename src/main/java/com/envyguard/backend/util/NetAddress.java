@@ -0,0 +1,161 @@
+package com.envyguard.backend.util;
+
+import lombok.Getter;
+
+/**
+ * Binary forms of IPv4 and MAC addresses.
+ *
+ * An IPv4 address is kept as an unsigned 32-bit value and a MAC address as a
+ * 48-bit value, both in a {@code long}, so they can be used as primitive map
+ * keys and compared as numbers (e.g. subnet ranges). Parsing never throws on
+ * malformed input and returns {@link #INVALID} instead.
+ */
+public final class NetAddress {
+
+    /**
+     * Returned by the parse methods for malformed input.
+     */
+    public static final long INVALID = -1L;
+
+    private NetAddress() {
+    }
+
+    /**
+     * @param ip Dotted IPv4 address (surrounding spaces are ignored)
+     * @return The address as an unsigned 32-bit value, or {@link #INVALID}
+     */
+    public static long parseIpv4(String ip) {
+        if (ip == null) {
+            return INVALID;
+        }
+        String value = ip.trim();
+        long result = 0;
+        int octets = 0;
+        int octet = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : '.';
+            if (c == '.') {
+                if (octet < 0 || ++octets > 4) {
+                    return INVALID;
+                }
+                result = (result << 8) | octet;
+                octet = -1;
+            } else if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return INVALID;
+                }
+            } else {
+                return INVALID;
+            }
+        }
+        return octets == 4 ? result : INVALID;
+    }
+
+    /**
+     * @param ip IPv4 address as an unsigned 32-bit value
+     * @return Dotted form of the address
+     */
+    public static String formatIpv4(long ip) {
+        return ((ip >>> 24) & 0xFF) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    /**
+     * @param mac MAC address in any case, with ':', '-' or '.' separators or none
+     * @return The address as a 48-bit value, or {@link #INVALID}
+     */
+    public static long parseMac(String mac) {
+        if (mac == null) {
+            return INVALID;
+        }
+        long result = 0;
+        int digits = 0;
+        for (int i = 0; i < mac.length(); i++) {
+            char c = mac.charAt(i);
+            int digit = Character.digit(c, 16);
+            if (digit >= 0) {
+                if (++digits > 12) {
+                    return INVALID;
+                }
+                result = (result << 4) | digit;
+            } else if (c != ':' && c != '-' && c != '.' && !Character.isWhitespace(c)) {
+                return INVALID;
+            }
+        }
+        return digits == 12 ? result : INVALID;
+    }
+
+    /**
+     * @param mac MAC address as a 48-bit value
+     * @return Canonical form (lowercase, ':' separated), e.g. 08:bf:b8:03:13:0f
+     */
+    public static String formatMac(long mac) {
+        StringBuilder builder = new StringBuilder(17);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            int octet = (int) ((mac >>> shift) & 0xFF);
+            builder.append(Character.forDigit(octet >>> 4, 16)).append(Character.forDigit(octet & 0xF, 16));
+            if (shift > 0) {
+                builder.append(':');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param mac MAC address in any accepted format
+     * @return Canonical form of the MAC, or null if it is malformed
+     */
+    public static String normalizeMac(String mac) {
+        long value = parseMac(mac);
+        return value == INVALID ? null : formatMac(value);
+    }
+
+    /**
+     * Parses an IPv4 subnet in CIDR notation.
+     *
+     * @param cidr Subnet, e.g. 10.0.120.0/24 (a plain address means /32)
+     * @return Range of addresses of the subnet
+     * @throws IllegalArgumentException If the subnet is malformed
+     */
+    public static Ipv4Range parseCidr(String cidr) {
+        if (cidr == null || cidr.isBlank()) {
+            throw new IllegalArgumentException("Subred vacía");
+        }
+        String[] parts = cidr.trim().split("/", 2);
+        long address = parseIpv4(parts[0]);
+        int prefix;
+        try {
+            prefix = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 32;
+        } catch (NumberFormatException e) {
+            prefix = -1;
+        }
+        if (address == INVALID || prefix < 0 || prefix > 32) {
+            throw new IllegalArgumentException("Subred inválida: " + cidr + ". Formato esperado: 10.0.120.0/24");
+        }
+        long mask = prefix == 0 ? 0 : (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+        long first = address & mask;
+        return new Ipv4Range(first, first | (~mask & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Inclusive range of IPv4 addresses.
+     */
+    @Getter
+    public static final class Ipv4Range {
+        private final long first;
+        private final long last;
+
+        private Ipv4Range(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * @param ip IPv4 address as an unsigned 32-bit value
+         * @return Whether the address is in the range
+         */
+        public boolean contains(long ip) {
+            return ip >= first && ip <= last;
+        }
+    }
+}
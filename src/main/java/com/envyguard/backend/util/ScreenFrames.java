@@ -0,0 +1,122 @@
+package com.envyguard.backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Decoding of the screen frames published by the monitoring agents.
+ *
+ * A frame is either a raw image (content type image/*) or the agents' JSON
+ * frame with the capture as a base64 field, optionally as a data: URL.
+ * Images are decoded with source subsampling down to the size the caller
+ * needs, so a full-resolution capture is never rasterized just to be shrunk.
+ */
+public final class ScreenFrames {
+
+    private static final List<String> IMAGE_FIELDS = List.of("Image", "image", "Screenshot", "screenshot", "Data", "data");
+
+    private ScreenFrames() {
+    }
+
+    /**
+     * @param objectMapper Mapper used to read JSON frames
+     * @param body         Frame body
+     * @param contentType  AMQP content type of the frame (may be null)
+     * @return Encoded image of the frame, or null if it carries none
+     * @throws IOException If a JSON frame is malformed
+     */
+    public static byte[] imageBytes(ObjectMapper objectMapper, byte[] body, String contentType) throws IOException {
+        if (contentType != null && contentType.startsWith("image/")) {
+            return body;
+        }
+        if (body.length == 0 || body[0] != '{') {
+            return null;
+        }
+        JsonNode node = objectMapper.readTree(body);
+        for (String field : IMAGE_FIELDS) {
+            JsonNode value = node.get(field);
+            if (value != null && value.isTextual()) {
+                String data = value.asText();
+                int comma = data.startsWith("data:") ? data.indexOf(',') : -1;
+                return Base64.getMimeDecoder().decode(comma >= 0 ? data.substring(comma + 1) : data);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes an image keeping only every n-th pixel, with the largest n that
+     * leaves at least the requested size.
+     *
+     * @param image     Encoded image (PNG, JPEG, ...)
+     * @param minWidth  Minimum width of the result
+     * @param minHeight Minimum height of the result
+     * @return Decoded image, or null if the format is not supported
+     * @throws IOException If the image is corrupt
+     */
+    public static BufferedImage readImage(byte[] image, int minWidth, int minHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0) / minWidth, reader.getHeight(0) / minHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Difference hash (dHash) of an image: the image is averaged into 9x8
+     * luminance blocks and each bit tells whether a block is darker than its
+     * right neighbour. Similar images get hashes a few bits apart.
+     *
+     * @param image Decoded image
+     * @return 64-bit hash
+     */
+    public static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[9 * 8];
+        int[] counts = new int[9 * 8];
+        for (int y = 0; y < height; y++) {
+            int row = y * 8 / height;
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int block = row * 9 + x * 9 / width;
+                sums[block] += (299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff)) / 1000;
+                counts[block]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                hash = (hash << 1) | (average(sums, counts, row * 9 + col) < average(sums, counts, row * 9 + col + 1) ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    private static long average(long[] sums, int[] counts, int block) {
+        return counts[block] == 0 ? 0 : sums[block] / counts[block];
+    }
+}
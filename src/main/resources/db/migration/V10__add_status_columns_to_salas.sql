@@ -0,0 +1,14 @@
+-- V10: Live status columns for every sala table
+-- sala_4 already had them outside the migrations; IF NOT EXISTS keeps this idempotent there.
+
+ALTER TABLE sala_1 ADD COLUMN IF NOT EXISTS status VARCHAR(50);
+ALTER TABLE sala_1 ADD COLUMN IF NOT EXISTS last_seen TIMESTAMP;
+
+ALTER TABLE sala_2 ADD COLUMN IF NOT EXISTS status VARCHAR(50);
+ALTER TABLE sala_2 ADD COLUMN IF NOT EXISTS last_seen TIMESTAMP;
+
+ALTER TABLE sala_3 ADD COLUMN IF NOT EXISTS status VARCHAR(50);
+ALTER TABLE sala_3 ADD COLUMN IF NOT EXISTS last_seen TIMESTAMP;
+
+ALTER TABLE sala_4 ADD COLUMN IF NOT EXISTS status VARCHAR(50);
+ALTER TABLE sala_4 ADD COLUMN IF NOT EXISTS last_seen TIMESTAMP;
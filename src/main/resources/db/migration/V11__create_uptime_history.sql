@@ -0,0 +1,25 @@
+-- V11: PC availability history
+-- pc_status_intervals: append-only log with one row per closed run of a status (run-length compacted)
+-- pc_uptime_daily: per-PC daily rollups that the uptime reports query
+
+CREATE TABLE IF NOT EXISTS pc_status_intervals (
+    id BIGSERIAL PRIMARY KEY,
+    sala_number INTEGER NOT NULL,
+    pc_id BIGINT NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    ended_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_pc_status_intervals_pc_started ON pc_status_intervals(sala_number, pc_id, started_at);
+
+CREATE TABLE IF NOT EXISTS pc_uptime_daily (
+    day DATE NOT NULL,
+    sala_number INTEGER NOT NULL,
+    pc_id BIGINT NOT NULL,
+    online_seconds BIGINT NOT NULL DEFAULT 0,
+    tracked_seconds BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, sala_number, pc_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_pc_uptime_daily_sala_day ON pc_uptime_daily(sala_number, day);
@@ -0,0 +1,49 @@
+-- V12: Binary IPv4 (ip_num) and MAC (mac_num) columns for the sala tables
+-- Generated from ip/mac, so existing writers keep using the text columns.
+-- Malformed values give NULL instead of failing the row.
+-- ip_num is the unsigned 32-bit address, so a subnet is a BETWEEN range:
+--   10.0.120.0/24 -> ip_num BETWEEN 167802880 AND 167803135
+
+ALTER TABLE sala_1 ADD COLUMN IF NOT EXISTS ip_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN btrim(ip) ~ '^(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}$'
+         THEN btrim(ip)::inet - '0.0.0.0'::inet END) STORED;
+ALTER TABLE sala_1 ADD COLUMN IF NOT EXISTS mac_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN regexp_replace(mac, '[:.\s-]', '', 'g') ~ '^[0-9A-Fa-f]{12}$'
+         THEN ('x' || lpad(regexp_replace(mac, '[:.\s-]', '', 'g'), 16, '0'))::bit(64)::bigint END) STORED;
+
+ALTER TABLE sala_2 ADD COLUMN IF NOT EXISTS ip_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN btrim(ip) ~ '^(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}$'
+         THEN btrim(ip)::inet - '0.0.0.0'::inet END) STORED;
+ALTER TABLE sala_2 ADD COLUMN IF NOT EXISTS mac_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN regexp_replace(mac, '[:.\s-]', '', 'g') ~ '^[0-9A-Fa-f]{12}$'
+         THEN ('x' || lpad(regexp_replace(mac, '[:.\s-]', '', 'g'), 16, '0'))::bit(64)::bigint END) STORED;
+
+ALTER TABLE sala_3 ADD COLUMN IF NOT EXISTS ip_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN btrim(ip) ~ '^(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}$'
+         THEN btrim(ip)::inet - '0.0.0.0'::inet END) STORED;
+ALTER TABLE sala_3 ADD COLUMN IF NOT EXISTS mac_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN regexp_replace(mac, '[:.\s-]', '', 'g') ~ '^[0-9A-Fa-f]{12}$'
+         THEN ('x' || lpad(regexp_replace(mac, '[:.\s-]', '', 'g'), 16, '0'))::bit(64)::bigint END) STORED;
+
+ALTER TABLE sala_4 ADD COLUMN IF NOT EXISTS ip_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN btrim(ip) ~ '^(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}$'
+         THEN btrim(ip)::inet - '0.0.0.0'::inet END) STORED;
+ALTER TABLE sala_4 ADD COLUMN IF NOT EXISTS mac_num BIGINT GENERATED ALWAYS AS (
+    CASE WHEN regexp_replace(mac, '[:.\s-]', '', 'g') ~ '^[0-9A-Fa-f]{12}$'
+         THEN ('x' || lpad(regexp_replace(mac, '[:.\s-]', '', 'g'), 16, '0'))::bit(64)::bigint END) STORED;
+
+-- The text IP indexes from V1 are replaced by the binary ones
+DROP INDEX IF EXISTS idx_sala_1_ip;
+DROP INDEX IF EXISTS idx_sala_2_ip;
+DROP INDEX IF EXISTS idx_sala_3_ip;
+DROP INDEX IF EXISTS idx_sala_4_ip;
+
+CREATE INDEX IF NOT EXISTS idx_sala_1_ip_num ON sala_1(ip_num);
+CREATE INDEX IF NOT EXISTS idx_sala_2_ip_num ON sala_2(ip_num);
+CREATE INDEX IF NOT EXISTS idx_sala_3_ip_num ON sala_3(ip_num);
+CREATE INDEX IF NOT EXISTS idx_sala_4_ip_num ON sala_4(ip_num);
+
+CREATE INDEX IF NOT EXISTS idx_sala_1_mac_num ON sala_1(mac_num);
+CREATE INDEX IF NOT EXISTS idx_sala_2_mac_num ON sala_2(mac_num);
+CREATE INDEX IF NOT EXISTS idx_sala_3_mac_num ON sala_3(mac_num);
+CREATE INDEX IF NOT EXISTS idx_sala_4_mac_num ON sala_4(mac_num);
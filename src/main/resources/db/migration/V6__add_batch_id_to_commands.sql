@@ -0,0 +1,5 @@
+-- V6: Add batch_id column to commands for batch command creation
+
+ALTER TABLE commands ADD COLUMN IF NOT EXISTS batch_id VARCHAR(36);
+
+CREATE INDEX IF NOT EXISTS idx_commands_batch_id ON commands(batch_id);
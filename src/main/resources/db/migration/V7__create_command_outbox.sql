@@ -0,0 +1,13 @@
+-- V7: Create transactional outbox for command publishing
+-- Rows are written in the same transaction as the command and drained by a background relay
+
+CREATE TABLE IF NOT EXISTS command_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    command_id BIGINT NOT NULL REFERENCES commands(id) ON DELETE CASCADE,
+    payload TEXT NOT NULL,               -- Mensaje JSON en el formato del agente C#
+    attempts INTEGER NOT NULL DEFAULT 0, -- Intentos de publicación fallidos
+    last_error VARCHAR(500),             -- Último error de publicación
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_command_outbox_command_id ON command_outbox(command_id);
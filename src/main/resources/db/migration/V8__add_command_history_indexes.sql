@@ -0,0 +1,14 @@
+-- V8: Composite indexes for the keyset-paginated command history (ORDER BY id DESC)
+-- Each filter column is followed by id so a filtered page is a single index range scan.
+
+CREATE INDEX IF NOT EXISTS idx_commands_sala_pc_id ON commands(sala_number, pc_id, id);
+CREATE INDEX IF NOT EXISTS idx_commands_status_id ON commands(status, id);
+CREATE INDEX IF NOT EXISTS idx_commands_computer_name_id ON commands(computer_name, id);
+CREATE INDEX IF NOT EXISTS idx_commands_user_email_id ON commands(user_email, id);
+CREATE INDEX IF NOT EXISTS idx_commands_action_id ON commands(action, id);
+
+-- Superseded by the composite indexes above (same leading column)
+DROP INDEX IF EXISTS idx_commands_sala_number;
+DROP INDEX IF EXISTS idx_commands_status;
+DROP INDEX IF EXISTS idx_commands_computer_name;
+DROP INDEX IF EXISTS idx_commands_user_email;
@@ -0,0 +1,6 @@
+-- V9: Dispatch priority for the command outbox
+-- The relay drains urgent commands (lock, shutdown, internet toggle) before bulk installs
+
+ALTER TABLE command_outbox ADD COLUMN IF NOT EXISTS priority INTEGER NOT NULL DEFAULT 5;
+
+CREATE INDEX IF NOT EXISTS idx_command_outbox_priority_id ON command_outbox(priority DESC, id);
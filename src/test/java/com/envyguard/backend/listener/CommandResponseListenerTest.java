@@ -0,0 +1,83 @@
+package com.envyguard.backend.listener;
+
+import com.envyguard.backend.config.RabbitMQConfig;
+import com.envyguard.backend.dto.CommandResponse;
+import com.envyguard.backend.service.CommandService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CommandResponseListenerTest {
+
+    private final CommandService commandService = mock(CommandService.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final CommandResponseListener listener = new CommandResponseListener(commandService, rabbitTemplate,
+            new ObjectMapper(), 0, 2);
+
+    @Test
+    void handleCommandResponses_AfterMaxAttempts_ShouldDeadLetterOnlyFailingResponse() {
+        // Arrange: el lote falla siempre por culpa de la respuesta del comando 2
+        Message good = message(1L);
+        Message bad = message(2L);
+        when(commandService.applyResponses(anyList())).thenAnswer(invocation -> {
+            List<CommandResponse> responses = invocation.getArgument(0);
+            if (responses.stream().anyMatch(response -> response.getCommandId() == 2L)) {
+                throw new DataAccessResourceFailureException("respuesta inválida");
+            }
+            return responses.size();
+        });
+
+        // Act: el primer intento reencola, el segundo alcanza el límite
+        assertThrows(ImmediateRequeueAmqpException.class,
+                () -> listener.handleCommandResponses(List.of(good, bad)));
+        listener.handleCommandResponses(List.of(good, bad));
+
+        // Assert
+        verify(commandService).applyResponses(argThat(responses ->
+                responses.size() == 1 && responses.get(0).getCommandId() == 1L));
+        verify(rabbitTemplate, times(1)).send(eq(""), eq(RabbitMQConfig.PC_RESPONSES_DLQ), eq(bad));
+        verify(rabbitTemplate, never()).send(anyString(), anyString(), eq(good));
+    }
+
+    @Test
+    void handleCommandResponses_WhenDeadLetterFails_ShouldRequeue() {
+        // Arrange
+        when(commandService.applyResponses(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("conexión perdida"));
+        doThrow(new AmqpConnectException(new RuntimeException()))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class));
+        CommandResponseListener singleAttempt = new CommandResponseListener(commandService, rabbitTemplate,
+                new ObjectMapper(), 0, 1);
+
+        // Act & Assert: sin cola de fallidos el mensaje no se descarta
+        assertThrows(ImmediateRequeueAmqpException.class,
+                () -> singleAttempt.handleCommandResponses(List.of(message(3L))));
+    }
+
+    private static Message message(long commandId) {
+        String json = "{\"commandId\":" + commandId + ",\"computerName\":\"PC-0" + commandId
+                + "\",\"status\":\"EXECUTED\"}";
+        return new Message(json.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+    }
+}
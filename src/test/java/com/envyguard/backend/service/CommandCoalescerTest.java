@@ -0,0 +1,68 @@
+package com.envyguard.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandCoalescerTest {
+
+    private final CommandCoalescer coalescer = new CommandCoalescer();
+
+    @Test
+    void claim_SameKey_ShouldJoinOwnerSlot() {
+        // Arrange
+        CommandCoalescer.Slot owner = coalescer.claim("command:4:1:SHUTDOWN:", 5000);
+
+        // Act
+        CommandCoalescer.Slot duplicate = coalescer.claim("command:4:1:SHUTDOWN:", 5000);
+        coalescer.complete(owner, 42L);
+
+        // Assert
+        assertTrue(owner.isOwner());
+        assertFalse(duplicate.isOwner());
+        assertEquals(42L, duplicate.getCommandId().join());
+    }
+
+    @Test
+    void fail_ShouldReleaseSlotForNextRequest() {
+        // Arrange
+        CommandCoalescer.Slot owner = coalescer.claim("command:4:1:REBOOT:", 5000);
+        CommandCoalescer.Slot duplicate = coalescer.claim("command:4:1:REBOOT:", 5000);
+
+        // Act
+        coalescer.fail(owner, new IllegalArgumentException("PC no encontrado"));
+        CommandCoalescer.Slot retry = coalescer.claim("command:4:1:REBOOT:", 5000);
+
+        // Assert
+        assertTrue(duplicate.getCommandId().isCompletedExceptionally());
+        assertTrue(retry.isOwner());
+    }
+
+    @Test
+    void claim_AfterExpiry_ShouldCreateNewOwner() {
+        // Arrange
+        CommandCoalescer.Slot owner = coalescer.claim("command:4:1:LOCK_SESSION:", 0);
+        coalescer.complete(owner, 7L);
+
+        // Act
+        CommandCoalescer.Slot next = coalescer.claim("command:4:1:LOCK_SESSION:", 0);
+
+        // Assert
+        assertTrue(next.isOwner());
+    }
+
+    @Test
+    void claim_SameKeyDifferentFingerprint_ShouldNotMatch() {
+        // Arrange
+        CommandCoalescer.Slot owner = coalescer.claim("idempotency:a@b.c:key-1", "hash-shutdown", 5000);
+
+        // Act
+        CommandCoalescer.Slot retry = coalescer.claim("idempotency:a@b.c:key-1", "hash-shutdown", 5000);
+        CommandCoalescer.Slot reused = coalescer.claim("idempotency:a@b.c:key-1", "hash-reboot", 5000);
+
+        // Assert
+        assertTrue(owner.isOwner());
+        assertTrue(retry.matches("hash-shutdown"));
+        assertFalse(reused.matches("hash-reboot"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.repository.SalaStatusRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ComputerStatusServiceTest {
+
+    private final SalaStatusRepository salaStatusRepository = mock(SalaStatusRepository.class);
+    private final ComputerStatusService service = new ComputerStatusService(salaStatusRepository,
+            mock(SimpMessagingTemplate.class), mock(StatusPipelineMetrics.class), mock(HeartbeatTracker.class),
+            mock(FleetStateStream.class), mock(PcDirectory.class), mock(UptimeRecorder.class));
+    private final PcDirectory.Pc pc = new PcDirectory.Pc(4, 7L, "PC-07", "10.0.4.7", null);
+
+    @Test
+    void flushLastSeen_ShouldRetryFailedTransitionWithStatus() {
+        // Arrange: la primera escritura del cambio a ONLINE falla
+        when(salaStatusRepository.updateStatus(eq(4), eq(7L), eq(Computer.ComputerStatus.ONLINE), any()))
+                .thenThrow(new DataAccessResourceFailureException("conexión perdida"))
+                .thenReturn(1);
+        service.apply(pc, Computer.ComputerStatus.ONLINE);
+
+        // Act
+        service.flushLastSeen();
+
+        // Assert: se reescribe el estado, no solo last_seen
+        verify(salaStatusRepository, times(2)).updateStatus(eq(4), eq(7L), eq(Computer.ComputerStatus.ONLINE), any());
+        verify(salaStatusRepository, never()).updateLastSeen(anyInt(), anyMap());
+        assertEquals(0, service.getFailedTransitionCount());
+        assertEquals(0, service.getDirtyCount());
+    }
+}
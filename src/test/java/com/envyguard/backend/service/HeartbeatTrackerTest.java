@@ -0,0 +1,66 @@
+package com.envyguard.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatTrackerTest {
+
+    // 3 intervalos de 1 s: el PC expira 3 s después de su último heartbeat
+    private final HeartbeatTracker tracker = new HeartbeatTracker(1000, 3);
+    private final long now = System.currentTimeMillis();
+    private final long pc = PcDirectory.key(4, 1L);
+
+    @Test
+    void expire_WithoutHeartbeats_ShouldReturnPcAfterThreshold() {
+        // Arrange
+        tracker.heartbeat(pc, now);
+
+        // Act & Assert
+        assertTrue(tracker.expire(now + 2000).isEmpty());
+        assertEquals(List.of(pc), tracker.expire(now + 4000));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void expire_AfterNewHeartbeat_ShouldReArmDeadline() {
+        // Arrange
+        tracker.heartbeat(pc, now);
+        tracker.heartbeat(pc, now + 2000);
+
+        // Act & Assert
+        assertTrue(tracker.expire(now + 4000).isEmpty());
+        assertEquals(List.of(pc), tracker.expire(now + 6000));
+    }
+
+    @Test
+    void expire_AfterForget_ShouldIgnorePc() {
+        // Arrange
+        tracker.heartbeat(pc, now);
+
+        // Act
+        tracker.forget(pc);
+
+        // Assert
+        assertTrue(tracker.expire(now + 10000).isEmpty());
+    }
+
+    @Test
+    void heartbeat_AfterForget_ShouldReuseWheelEntry() {
+        // Arrange: ciclo ONLINE -> OFFLINE -> ONLINE antes de que la entrada dispare
+        tracker.heartbeat(pc, now);
+        tracker.forget(pc);
+
+        // Act
+        tracker.heartbeat(pc, now + 1000);
+
+        // Assert: una sola entrada, re-armada en cada tick hasta expirar una vez
+        assertEquals(1, tracker.scheduled());
+        assertTrue(tracker.expire(now + 3500).isEmpty());
+        assertEquals(1, tracker.scheduled());
+        assertEquals(List.of(pc), tracker.expire(now + 5000));
+        assertEquals(0, tracker.scheduled());
+    }
+}
@@ -0,0 +1,100 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.util.ScreenFrames;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScreenChangeDetectorTest {
+
+    private final PcDirectory.Pc pc = new PcDirectory.Pc(4, 7L, "PC-07", "10.0.4.7", null);
+
+    @Test
+    void shouldRelay_ShouldSuppressUnchangedFramesUntilScreenChanges() throws Exception {
+        // Arrange
+        ScreenChangeDetector detector = new ScreenChangeDetector(4, 60_000);
+        byte[] editor = screen(Color.WHITE);
+        byte[] sameEditor = screen(Color.WHITE);
+        byte[] browser = screen(Color.BLACK);
+
+        // Act
+        boolean first = detector.shouldRelay(pc, hash(editor), editor.length);
+        boolean unchanged = detector.shouldRelay(pc, hash(sameEditor), sameEditor.length);
+        boolean changed = detector.shouldRelay(pc, hash(browser), browser.length);
+
+        // Assert
+        assertTrue(first);
+        assertFalse(unchanged);
+        assertTrue(changed);
+        Map<String, Object> stats = detector.snapshot().get("4/7");
+        assertEquals(2L, stats.get("relayed"));
+        assertEquals(1L, stats.get("suppressed"));
+        assertEquals((long) sameEditor.length, stats.get("bytesSaved"));
+    }
+
+    @Test
+    void shouldRelay_ShouldForceKeyframes() throws Exception {
+        // Arrange: keyframe-ms 0, todo frame es keyframe
+        ScreenChangeDetector detector = new ScreenChangeDetector(4, 0);
+        byte[] frame = screen(Color.WHITE);
+
+        // Act / Assert
+        assertTrue(detector.shouldRelay(pc, hash(frame), frame.length));
+        assertTrue(detector.shouldRelay(pc, hash(frame), frame.length));
+    }
+
+    @Test
+    void shouldRelay_ShouldAlwaysRelayFramesWithoutImage() {
+        // Arrange
+        ScreenChangeDetector detector = new ScreenChangeDetector(4, 60_000);
+
+        // Act / Assert
+        assertTrue(detector.shouldRelay(pc, null, 10));
+        assertTrue(detector.shouldRelay(pc, null, 10));
+    }
+
+    @Test
+    void forceKeyframe_ShouldRelayNextFrameOfCoveredPcs() throws Exception {
+        // Arrange
+        ScreenChangeDetector detector = new ScreenChangeDetector(4, 60_000);
+        PcDirectory.Pc other = new PcDirectory.Pc(5, 2L, "PC-02", "10.0.5.2", null);
+        byte[] frame = screen(Color.WHITE);
+        detector.shouldRelay(pc, hash(frame), frame.length);
+        detector.shouldRelay(other, hash(frame), frame.length);
+
+        // Act: un nuevo suscriptor a las pantallas de la sala 4
+        detector.forceKeyframe(SpyService.screensDestination(4) + "/*");
+
+        // Assert
+        assertTrue(detector.shouldRelay(pc, hash(frame), frame.length));
+        assertFalse(detector.shouldRelay(other, hash(frame), frame.length));
+    }
+
+    private static long hash(byte[] png) throws Exception {
+        return ScreenFrames.differenceHash(ScreenFrames.readImage(png,
+                ScreenChangeDetector.HASH_SOURCE_WIDTH, ScreenChangeDetector.HASH_SOURCE_HEIGHT));
+    }
+
+    // Pantalla 1280x800 con bandas verticales; el color de la mitad derecha cambia de una a otra
+    private static byte[] screen(Color right) throws Exception {
+        BufferedImage image = new BufferedImage(1280, 800, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        for (int x = 0; x < 1280; x += 80) {
+            graphics.setColor(new Color(x / 5, x / 5, x / 5));
+            graphics.fillRect(x, 0, 80, 800);
+        }
+        graphics.setColor(right);
+        graphics.fillRect(640, 0, 320, 800);
+        graphics.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+}
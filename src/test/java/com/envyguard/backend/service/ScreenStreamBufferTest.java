@@ -0,0 +1,91 @@
+package com.envyguard.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScreenStreamBufferTest {
+
+    private final List<Message<?>> sent = new ArrayList<>();
+    private final ScreenSubscriptionRegistry subscriptionRegistry = new ScreenSubscriptionRegistry();
+    private final ScreenStreamBuffer screenStreamBuffer;
+
+    ScreenStreamBufferTest() {
+        ExecutorSubscribableChannel clientOutboundChannel = new ExecutorSubscribableChannel();
+        clientOutboundChannel.subscribe(sent::add);
+        screenStreamBuffer = new ScreenStreamBuffer(clientOutboundChannel, subscriptionRegistry, 1000, 2, 30000);
+    }
+
+    @Test
+    void offer_ShouldEvictLeastRecentSlotWhenSessionIsFull() {
+        // Arrange
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.SCREENS_DESTINATION);
+        List<String> destinations = List.of(SpyService.SCREENS_DESTINATION);
+        screenStreamBuffer.offer("pc-1", destinations, new byte[]{1}, Map.of());
+        screenStreamBuffer.offer("pc-2", destinations, new byte[]{2}, Map.of());
+        screenStreamBuffer.offer("pc-1", destinations, new byte[]{3}, Map.of());
+
+        // Act: una tercera fuente con la sesión llena
+        byte[] newSource = new byte[]{4};
+        int sessions = screenStreamBuffer.offer("pc-3", destinations, newSource, Map.of());
+        screenStreamBuffer.flush();
+
+        // Assert: se desaloja pc-2 (el menos reciente) y el frame nuevo sí se entrega
+        assertEquals(1, sessions);
+        assertEquals(2, sent.size());
+        assertTrue(sent.stream().anyMatch(message -> message.getPayload() == newSource));
+        Map<String, Object> stats = screenStreamBuffer.snapshot().get("session-1");
+        assertEquals(1L, stats.get("evicted"));
+        assertEquals(2, stats.get("slots"));
+    }
+
+    @Test
+    void flush_ShouldDropStreamOfUnknownSession() {
+        // Arrange: frame enrutado justo antes de que la sesión se desconecte
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.SCREENS_DESTINATION);
+        screenStreamBuffer.offer("pc-1", List.of(SpyService.SCREENS_DESTINATION), new byte[]{1}, Map.of());
+        subscriptionRegistry.disconnect("session-1");
+
+        // Act
+        screenStreamBuffer.flush();
+
+        // Assert
+        assertTrue(sent.isEmpty());
+        assertFalse(screenStreamBuffer.snapshot().containsKey("session-1"));
+    }
+
+    @Test
+    void onUnsubscribe_ShouldFreeSlotsOfSubscription() {
+        // Arrange
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.screensDestination(1));
+        subscriptionRegistry.subscribe("session-1", "sub-1", SpyService.screensDestination(2));
+        screenStreamBuffer.offer("thumbnail-1", List.of(SpyService.screensDestination(1)), new byte[]{1}, Map.of());
+        screenStreamBuffer.offer("thumbnail-2", List.of(SpyService.screensDestination(2)), new byte[]{2}, Map.of());
+
+        // Act: el proctor deja la grilla de la sala 1
+        subscriptionRegistry.unsubscribe("session-1", "sub-0");
+        screenStreamBuffer.onUnsubscribe(new SessionUnsubscribeEvent(this, unsubscribeMessage("session-1", "sub-0")));
+        screenStreamBuffer.flush();
+
+        // Assert
+        assertEquals(1, sent.size());
+        assertEquals(1, screenStreamBuffer.snapshot().get("session-1").get("slots"));
+    }
+
+    private static Message<byte[]> unsubscribeMessage(String sessionId, String subscriptionId) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+}
@@ -0,0 +1,95 @@
+package com.envyguard.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class ScreenThumbnailerTest {
+
+    private final ScreenStreamBuffer screenStreamBuffer = mock(ScreenStreamBuffer.class);
+    private final ScreenChangeDetector screenChangeDetector = new ScreenChangeDetector(4, 60_000);
+    private final ScreenThumbnailer thumbnailer = new ScreenThumbnailer(screenStreamBuffer,
+            new ScreenSubscriptionRegistry(), screenChangeDetector, new ObjectMapper(),
+            320, 180, 10_000, 1, 1);
+
+    @Test
+    void thumbnail_ShouldFitGridResolutionKeepingAspectRatio() throws Exception {
+        // Arrange: captura 1920x1200 (16:10) en PNG y en el JSON del agente
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1920, 1200, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] json = ("{\"PcId\":7,\"Image\":\"data:image/png;base64,"
+                + Base64.getEncoder().encodeToString(png.toByteArray()) + "\"}").getBytes();
+
+        // Act
+        byte[] fromImage = thumbnailer.thumbnail(png.toByteArray(), "image/png");
+        byte[] fromJson = thumbnailer.thumbnail(json, "application/json");
+        byte[] fromGarbage = thumbnailer.thumbnail("not a frame".getBytes(), null);
+
+        // Assert
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(fromImage));
+        assertEquals(288, thumbnail.getWidth());
+        assertEquals(180, thumbnail.getHeight());
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(fromJson)));
+        assertTrue(fromImage.length < png.size());
+        assertNull(fromGarbage);
+        thumbnailer.shutdown();
+    }
+
+    @Test
+    void submit_ShouldRelayOnlyChangedFramesFromWorker() throws Exception {
+        // Arrange
+        PcDirectory.Pc pc = new PcDirectory.Pc(4, 7L, "PC-07", "10.0.4.7", null);
+        List<String> destinations = List.of(SpyService.screensDestination(4, 7), SpyService.SCREENS_DESTINATION);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1920, 1200, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] first = png.toByteArray();
+        byte[] same = png.toByteArray();
+
+        // Act: dos capturas idénticas, solo se mira el frame completo
+        thumbnailer.submit(pc, first, "image/png", destinations, Map.of(), false);
+        verify(screenStreamBuffer, timeout(5000)).offer(eq(pc.getKey()), eq(destinations), same(first), anyMap());
+        thumbnailer.submit(pc, same, "image/png", destinations, Map.of(), false);
+
+        // Assert: la segunda no se entrega y no se hace miniatura
+        verify(screenStreamBuffer, after(500).never()).offer(any(), any(), same(same), anyMap());
+        verify(screenStreamBuffer, never()).offer(eq("thumbnail-" + pc.getKey()), any(), any(), anyMap());
+        assertEquals(0L, thumbnailer.snapshot().get("generated"));
+        thumbnailer.shutdown();
+    }
+
+    @Test
+    void submit_ThumbnailOnly_ShouldNotCountAsRelayed() throws Exception {
+        // Arrange
+        PcDirectory.Pc pc = new PcDirectory.Pc(4, 7L, "PC-07", "10.0.4.7", null);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1920, 1200, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] frame = png.toByteArray();
+
+        // Act: nadie mira el topic del PC, solo se pide la miniatura
+        thumbnailer.submit(pc, frame, "image/png", List.of(), Map.of(), true);
+
+        // Assert: hay miniatura pero el detector no registra el frame
+        verify(screenStreamBuffer, timeout(5000)).offer(eq("thumbnail-" + pc.getKey()), any(), any(), anyMap());
+        verify(screenStreamBuffer, never()).offer(eq(pc.getKey()), any(), any(), anyMap());
+        assertNull(screenChangeDetector.snapshot().get("4/7"));
+        thumbnailer.shutdown();
+    }
+}
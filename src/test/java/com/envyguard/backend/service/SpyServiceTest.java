@@ -0,0 +1,139 @@
+package com.envyguard.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpyServiceTest {
+
+    private final List<Message<?>> sent = new ArrayList<>();
+    private final PcDirectory pcDirectory = mock(PcDirectory.class);
+    private final ScreenSubscriptionRegistry subscriptionRegistry = new ScreenSubscriptionRegistry();
+    private final ScreenThumbnailer screenThumbnailer = mock(ScreenThumbnailer.class);
+    private final ScreenStreamBuffer screenStreamBuffer;
+    private final SpyService spyService;
+
+    SpyServiceTest() {
+        // Canal sin executor: los frames se entregan en el hilo que llama a flush()
+        ExecutorSubscribableChannel clientOutboundChannel = new ExecutorSubscribableChannel();
+        clientOutboundChannel.subscribe(sent::add);
+        screenStreamBuffer = new ScreenStreamBuffer(clientOutboundChannel, subscriptionRegistry, 1000, 64, 30000);
+        spyService = new SpyService(screenStreamBuffer, screenThumbnailer, subscriptionRegistry, pcDirectory);
+    }
+
+    @Test
+    void receiveAndBroadcast_ShouldForwardBodyWithoutCopying() {
+        // Arrange: frame de 512 KB como una captura de pantalla
+        byte[] body = new byte[512 * 1024];
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType("image/jpeg");
+        properties.setHeader("PcId", 12);
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.SCREENS_DESTINATION);
+
+        // Act
+        spyService.receiveAndBroadcast(new org.springframework.amqp.core.Message(body, properties));
+        screenStreamBuffer.flush();
+
+        // Assert: el mismo array llega a la sesión, 0 bytes copiados por frame en el relay
+        assertEquals(1, sent.size());
+        assertSame(body, sent.get(0).getPayload());
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(sent.get(0));
+        assertEquals("session-1", headers.getSessionId());
+        assertEquals("sub-0", headers.getSubscriptionId());
+        assertEquals(SpyService.SCREENS_DESTINATION, headers.getDestination());
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, headers.getContentType());
+        assertEquals("image/jpeg", headers.getFirstNativeHeader(SpyService.FRAME_CONTENT_TYPE_HEADER));
+        assertEquals("12", headers.getFirstNativeHeader(SpyService.PC_ID_HEADER));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void receiveAndBroadcast_ShouldOnlyDecodeWatchedFrames() {
+        // Arrange
+        PcDirectory.Pc pc = new PcDirectory.Pc(4, 7L, "PC-07", "10.0.4.7", null);
+        when(pcDirectory.findByIp(any())).thenReturn(Optional.of(pc));
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader("IpAddress", "10.0.4.7");
+        byte[] body = new byte[]{1};
+        org.springframework.amqp.core.Message frame = new org.springframework.amqp.core.Message(body, properties);
+
+        // Act: sin nadie mirando y luego con el PC abierto
+        spyService.receiveAndBroadcast(frame);
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.screensDestination(4, 7));
+        spyService.receiveAndBroadcast(frame);
+
+        // Assert: el primer frame no llega al pool; el segundo va a los destinos del PC
+        ArgumentCaptor<Map<String, String>> headers = ArgumentCaptor.forClass(Map.class);
+        verify(screenThumbnailer, times(1)).submit(eq(pc), same(body), eq(MessageProperties.DEFAULT_CONTENT_TYPE),
+                eq(List.of("/topic/screens/4/7", SpyService.SCREENS_DESTINATION)), headers.capture(), eq(false));
+        assertEquals("4", headers.getValue().get(SpyService.SALA_HEADER));
+        assertEquals("7", headers.getValue().get(SpyService.PC_ID_HEADER));
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void receiveAndBroadcast_ShouldKeepOnlyLatestFrameOfSlowSession() {
+        // Arrange
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.SCREENS_DESTINATION);
+        byte[] latest = new byte[]{3};
+
+        // Act: tres frames del mismo agente antes del siguiente tick
+        for (byte[] body : List.of(new byte[]{1}, new byte[]{2}, latest)) {
+            spyService.receiveAndBroadcast(new org.springframework.amqp.core.Message(body, agentProperties("agent-1")));
+        }
+        screenStreamBuffer.flush();
+
+        // Assert
+        assertEquals(1, sent.size());
+        assertSame(latest, sent.get(0).getPayload());
+        Map<String, Object> stats = screenStreamBuffer.snapshot().get("session-1");
+        assertEquals(1L, stats.get("sent"));
+        assertEquals(2L, stats.get("dropped"));
+        assertEquals(0L, stats.get("pending"));
+    }
+
+    @Test
+    void receiveAndBroadcast_ShouldKeepUnresolvedAgentsInSeparateSlots() {
+        // Arrange
+        subscriptionRegistry.subscribe("session-1", "sub-0", SpyService.SCREENS_DESTINATION);
+        byte[] first = new byte[]{1};
+        byte[] second = new byte[]{2};
+        byte[] anonymous = new byte[]{3};
+
+        // Act: frames JSON sin cabeceras de IP/MAC/sala, de dos agentes y de uno sin identificar
+        spyService.receiveAndBroadcast(new org.springframework.amqp.core.Message(first, agentProperties("agent-1")));
+        spyService.receiveAndBroadcast(new org.springframework.amqp.core.Message(second, agentProperties("agent-2")));
+        spyService.receiveAndBroadcast(new org.springframework.amqp.core.Message(anonymous, new MessageProperties()));
+        screenStreamBuffer.flush();
+
+        // Assert: ninguno pisa al otro
+        assertEquals(3, sent.size());
+        assertEquals(0L, screenStreamBuffer.snapshot().get("session-1").get("dropped"));
+    }
+
+    private static MessageProperties agentProperties(String appId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setAppId(appId);
+        return properties;
+    }
+}
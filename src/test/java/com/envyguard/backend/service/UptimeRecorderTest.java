@@ -0,0 +1,44 @@
+package com.envyguard.backend.service;
+
+import com.envyguard.backend.entity.Computer;
+import com.envyguard.backend.repository.UptimeRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class UptimeRecorderTest {
+
+    private final UptimeRepository uptimeRepository = mock(UptimeRepository.class);
+    private final UptimeRecorder recorder = new UptimeRecorder(uptimeRepository,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shutdown_ShouldCloseOpenRunsAsIntervals() {
+        // Arrange
+        PcDirectory.Pc pc = new PcDirectory.Pc(4, 7L, "PC-07", "10.0.4.7", null);
+        LocalDateTime since = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+        recorder.transition(pc, Computer.ComputerStatus.ONLINE, since);
+
+        // Act
+        recorder.shutdown();
+
+        // Assert: la racha abierta se escribe cerrada en el momento del apagado
+        ArgumentCaptor<List<UptimeRepository.StatusInterval>> intervals = ArgumentCaptor.forClass(List.class);
+        verify(uptimeRepository).insertIntervals(intervals.capture());
+        assertEquals(1, intervals.getValue().size());
+        UptimeRepository.StatusInterval interval = intervals.getValue().get(0);
+        assertEquals(Computer.ComputerStatus.ONLINE, interval.getStatus());
+        assertEquals(since, interval.getStartedAt());
+        assertFalse(interval.getEndedAt().isBefore(since.plusHours(1)));
+    }
+}
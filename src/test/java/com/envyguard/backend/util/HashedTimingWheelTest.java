@@ -0,0 +1,50 @@
+package com.envyguard.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void advance_ShouldReturnOnlyExpiredItems() {
+        // Arrange
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.schedule("soon", 250);
+        wheel.schedule("later", 900);
+
+        // Act
+        List<String> first = wheel.advance(300);
+        List<String> second = wheel.advance(1000);
+
+        // Assert
+        assertEquals(List.of("soon"), first);
+        assertEquals(List.of("later"), second);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldKeepItemsScheduledSeveralRotationsAhead() {
+        // Arrange: 8 buckets of 100 ms = one rotation every 800 ms
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.schedule("far", 2000);
+
+        // Act & Assert
+        assertTrue(wheel.advance(1000).isEmpty());
+        assertTrue(wheel.advance(1900).isEmpty());
+        assertEquals(List.of("far"), wheel.advance(2000));
+    }
+
+    @Test
+    void schedule_PastDeadline_ShouldExpireOnNextTick() {
+        // Arrange
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.advance(500);
+        wheel.schedule("late", 100);
+
+        // Act & Assert
+        assertEquals(List.of("late"), wheel.advance(600));
+    }
+}
@@ -0,0 +1,41 @@
+package com.envyguard.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetAddressTest {
+
+    @Test
+    void parseIpv4_ShouldRoundTripAndRejectMalformed() {
+        // Act
+        long ip = NetAddress.parseIpv4(" 10.0.120.2 ");
+
+        // Assert
+        assertEquals("10.0.120.2", NetAddress.formatIpv4(ip));
+        assertEquals(4294967295L, NetAddress.parseIpv4("255.255.255.255"));
+        assertEquals(NetAddress.INVALID, NetAddress.parseIpv4("10.0.120"));
+        assertEquals(NetAddress.INVALID, NetAddress.parseIpv4("10.0.256.1"));
+        assertEquals(NetAddress.INVALID, NetAddress.parseIpv4("10..120.1"));
+    }
+
+    @Test
+    void normalizeMac_ShouldAcceptAnySeparatorAndCase() {
+        // Act & Assert
+        assertEquals("08:bf:b8:03:13:0f", NetAddress.normalizeMac("08-BF-B8-03-13-0F"));
+        assertEquals("08:bf:b8:03:13:0f", NetAddress.normalizeMac("08bf.b803.130f"));
+        assertEquals(NetAddress.parseMac("08:bf:b8:03:13:0f"), NetAddress.parseMac("08BFB803130F"));
+        assertNull(NetAddress.normalizeMac("08:bf:b8:03:13"));
+    }
+
+    @Test
+    void parseCidr_ShouldSeparateRoomSubnets() {
+        // Arrange
+        NetAddress.Ipv4Range sala = NetAddress.parseCidr("10.0.120.0/24");
+
+        // Act & Assert
+        assertTrue(sala.contains(NetAddress.parseIpv4("10.0.120.254")));
+        assertFalse(sala.contains(NetAddress.parseIpv4("10.0.90.2")));
+        assertThrows(IllegalArgumentException.class, () -> NetAddress.parseCidr("10.0.120.0/33"));
+    }
+}